@@ -16,42 +16,112 @@
 
 package dev.snowdrop.example;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.snowdrop.example.service.Book;
 import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookIndexMaintenance;
+import dev.snowdrop.example.service.BookSnapshot;
 import me.snowdrop.data.core.repository.config.EnableSnowdropRepositories;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.infinispan.Cache;
 import org.infinispan.configuration.cache.ConfigurationBuilder;
 import org.infinispan.configuration.cache.Index;
+import org.infinispan.configuration.cache.IndexingConfigurationBuilder;
 import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.context.Flag;
 import org.infinispan.manager.DefaultCacheManager;
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.query.Search;
+import org.infinispan.query.SearchManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableSnowdropRepositories
+@EnableScheduling
 public class ExampleApplication {
 
+    private static final Logger log = LoggerFactory.getLogger(ExampleApplication.class);
+
+    /**
+     * Number of shards the book index is split into by id hash.
+     */
+    @Value("${books.index.shards:1}")
+    private int shards;
+
+    /**
+     * Books removed per invocation batch by bulk operations, or 0 to remove them one at a time.
+     */
+    @Value("${books.bulk.batch-size:0}")
+    private int bulkBatchSize;
+
     public static void main(String[] args) {
         SpringApplication.run(ExampleApplication.class, args);
     }
 
+    /**
+     * Store snapshot together with its filesystem index, only if {@code books.snapshot.dir} is set.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "books.snapshot.dir")
+    public BookSnapshot bookSnapshot(@Value("${books.snapshot.dir}") String snapshotDir, ObjectMapper mapper) {
+        return new BookSnapshot(Paths.get(snapshotDir), mapper);
+    }
+
     @Bean(destroyMethod = "stop")
-    public EmbeddedCacheManager createCacheManager() {
+    public EmbeddedCacheManager createCacheManager(ObjectProvider<BookSnapshot> snapshot) {
+        BookSnapshot bookSnapshot = snapshot.getIfAvailable();
+        return createCacheManager(bookSnapshot != null ? bookSnapshot.getIndexDirectory() : null, shards, bulkBatchSize > 0);
+    }
+
+    /**
+     * @param indexDirectory directory of a filesystem index, or null to keep the index on the heap
+     * @param invocationBatching whether bulk operations may batch their writes, which makes the cache transactional
+     */
+    public static EmbeddedCacheManager createCacheManager(Path indexDirectory, int shards, boolean invocationBatching) {
         GlobalConfigurationBuilder globalCfg = new GlobalConfigurationBuilder();
         globalCfg.globalJmxStatistics().allowDuplicateDomains(true).disable(); // get rid of this?
 
         ConfigurationBuilder cacheCfg = new ConfigurationBuilder();
         cacheCfg.jmxStatistics().disable();
-        cacheCfg.indexing()
+        if (invocationBatching) {
+            // every single write then runs in an implicit transaction, so this is only done when asked for
+            cacheCfg.invocationBatching().enable();
+        }
+        IndexingConfigurationBuilder indexingCfg = cacheCfg.indexing()
             .index(Index.ALL)
             .addIndexedEntity(Book.class)
-            .addProperty("default.directory_provider", "local-heap")
             .addProperty("default.analyzer", "org.apache.lucene.analysis.core.KeywordAnalyzer")
             .addProperty("lucene_version", "LUCENE_CURRENT");
+        if (indexDirectory != null) {
+            // the index has to outlive the process for the snapshot to be usable
+            indexingCfg
+                .addProperty("default.directory_provider", "filesystem")
+                .addProperty("default.indexBase", indexDirectory.toString());
+        } else {
+            indexingCfg.addProperty("default.directory_provider", "local-heap");
+        }
+        if (shards > 1) {
+            indexingCfg.addProperty("default.sharding_strategy.nbr_of_shards", String.valueOf(shards));
+        }
 
         return new DefaultCacheManager(globalCfg.build(), cacheCfg.build());
     }
@@ -62,27 +132,80 @@ public class ExampleApplication {
     }
 
     @Bean
-    public BuildDataStore buildDataStore(Cache<Integer, Book> store) {
-        return new BuildDataStore(store);
+    public BuildDataStore buildDataStore(Cache<Integer, Book> store, ObjectProvider<BookSnapshot> snapshot, BookIndexMaintenance indexMaintenance) {
+        return new BuildDataStore(store, snapshot.getIfAvailable(), indexMaintenance);
     }
 
-    public class BuildDataStore implements ApplicationListener<ApplicationReadyEvent> {
+    public class BuildDataStore implements ApplicationListener<ApplicationEvent> {
         private Cache<Integer, Book> store;
+        private BookSnapshot snapshot;
+        private BookIndexMaintenance indexMaintenance;
 
-        public BuildDataStore(Cache<Integer, Book> store) {
+        public BuildDataStore(Cache<Integer, Book> store, BookSnapshot snapshot, BookIndexMaintenance indexMaintenance) {
             this.store = store;
+            this.snapshot = snapshot;
+            this.indexMaintenance = indexMaintenance;
         }
 
         @Override
-        public void onApplicationEvent(final ApplicationReadyEvent event) {
+        public void onApplicationEvent(final ApplicationEvent event) {
+            if (event instanceof ApplicationReadyEvent) {
+                build();
+            } else if (event instanceof ContextClosedEvent && snapshot != null) {
+                saveSnapshot();
+            }
+        }
+
+        private void build() {
+            long start = System.nanoTime();
+            String source = "seed data";
             try {
-                store.clear();
-                for (BookEnum fe : BookEnum.values()) {
-                    Book f = fe.toBook();
-                    store.put(f.getId(), f);
+                BookSnapshot.Contents restored = (snapshot != null ? snapshot.restore() : null);
+                if (restored != null) {
+                    restore(restored);
+                    source = "snapshot";
+                } else {
+                    store.clear();
+                    Map<Integer, Book> books = new LinkedHashMap<>();
+                    for (BookEnum fe : BookEnum.values()) {
+                        Book f = fe.toBook();
+                        books.put(f.getId(), f);
+                    }
+                    store.putAll(books);
                 }
             } catch (Exception e) {
-                System.out.println("An error occurred trying to build data store: " + e.toString());
+                log.error("An error occurred trying to build data store", e);
+            }
+            log.info("Data store built from {} in {} ms, ready {} ms after JVM start",
+                source, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+
+        private void restore(BookSnapshot.Contents restored) {
+            // the filesystem index holds these books, unless it was written to after the snapshot was taken
+            String indexVersions = indexMaintenance.commitVersions();
+            Map<Integer, Book> books = restored.toMap();
+            store.getAdvancedCache().withFlags(Flag.SKIP_INDEXING).putAll(books);
+
+            SearchManager searchManager = Search.getSearchManager(store);
+            if (indexVersions == null || !indexVersions.equals(restored.getIndexVersions())) {
+                log.warn("Index was changed after the snapshot was taken, reindexing");
+                searchManager.getMassIndexer().start();
+                return;
+            }
+            int indexed = searchManager.getQuery(new MatchAllDocsQuery(), Book.class).getResultSize();
+            if (indexed != books.size()) {
+                log.warn("Index holds {} books but the snapshot {}, reindexing", indexed, books.size());
+                searchManager.getMassIndexer().start();
+            }
+        }
+
+        private void saveSnapshot() {
+            try {
+                // taken first: any write reaching the index from here on changes them
+                String indexVersions = indexMaintenance.commitVersions();
+                snapshot.save(store.values(), indexVersions);
+            } catch (Exception e) {
+                log.error("An error occurred trying to save data store snapshot", e);
             }
         }
     }
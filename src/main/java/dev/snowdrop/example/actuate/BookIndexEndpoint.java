@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.actuate;
+
+import java.util.Collections;
+import java.util.Map;
+
+import dev.snowdrop.example.service.BookIndexMaintenance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Statistics of the book index, and its {@code merge} and {@code reindex} operations.
+ */
+@Component
+@Endpoint(id = "bookindex")
+public class BookIndexEndpoint {
+
+    private final BookIndexMaintenance maintenance;
+
+    @Autowired
+    public BookIndexEndpoint(BookIndexMaintenance maintenance) {
+        this.maintenance = maintenance;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return maintenance.stats();
+    }
+
+    @WriteOperation
+    public Map<String, Object> run(@Selector String operation) {
+        switch (operation) {
+            case "merge":
+                maintenance.mergeAll();
+                return maintenance.stats();
+            case "reindex":
+                return Collections.singletonMap("started", maintenance.reindex());
+            default:
+                throw new IllegalArgumentException("Unknown index operation: " + operation);
+        }
+    }
+}
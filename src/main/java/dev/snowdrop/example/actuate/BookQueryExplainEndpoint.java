@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.actuate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookLuceneQueries;
+import dev.snowdrop.example.service.BookQuery;
+import dev.snowdrop.example.service.BookRepository;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Explains a {@code /api/books/findForm} search: the parsed criteria, the equivalent Lucene query and sort,
+ * and the hits and time of every phase. No books are returned.
+ */
+@Component
+@Endpoint(id = "bookexplain")
+public class BookQueryExplainEndpoint {
+
+    private final BookRepository repository;
+    private final BookLuceneQueries queries;
+
+    @Autowired
+    public BookQueryExplainEndpoint(BookRepository repository, BookLuceneQueries queries) {
+        this.repository = repository;
+        this.queries = queries;
+    }
+
+    @ReadOperation
+    public Map<String, Object> explain(@Nullable String author, @Nullable String content, @Nullable String releaseDate,
+                                       @Nullable String orderBy, @Nullable String direction, @Nullable Integer maxResults) {
+        BookQuery example = new BookQuery();
+        if (author != null) {
+            example.setAuthor(author);
+        }
+        if (content != null) {
+            example.setContent(content);
+        }
+        if (releaseDate != null) {
+            example.setReleaseDate(LocalDate.parse(releaseDate));
+        }
+        if (orderBy != null) {
+            example.setOrderBy(orderBy);
+        }
+        if (direction != null) {
+            example.setDirection(direction);
+        }
+        if (maxResults != null) {
+            example.setMaxResults(maxResults);
+        }
+        return explain(example);
+    }
+
+    private Map<String, Object> explain(BookQuery example) {
+        long start = System.nanoTime();
+        Map<String, Object> criteria = new LinkedHashMap<>();
+        criteria.put("author", example.getAuthor());
+        criteria.put("content", example.getContent());
+        criteria.put("releaseDate", example.getReleaseDate());
+        criteria.put("orderBy", example.getOrderBy());
+        criteria.put("direction", example.getDirection());
+        criteria.put("maxResults", example.getMaxResults());
+
+        Direction direction = Direction.fromString(example.getDirection());
+        Pageable pageable = PageRequest.of(0, example.getMaxResults(), direction, example.getOrderBy());
+        Query query = queries.byExample(example);
+        Sort sort = queries.sort(example.getOrderBy(), direction);
+
+        List<Map<String, Object>> phases = new ArrayList<>();
+        Set<Integer> ids = null;
+        if (example.getReleaseDate() != null) {
+            ids = retain(ids, phase(phases, "findByReleaseDate", () -> repository.findByReleaseDate(example.getReleaseDate(), pageable)));
+        }
+        if (StringUtils.hasLength(example.getAuthor())) {
+            ids = retain(ids, phase(phases, "findByAuthor", () -> repository.findByAuthor(example.getAuthor(), pageable)));
+        }
+        if (StringUtils.hasLength(example.getContent())) {
+            ids = retain(ids, phase(phases, "findByContentContains", () -> repository.findByContentContains(example.getContent(), pageable)));
+        }
+        long countStart = System.nanoTime();
+        int indexHits = queries.query(query).getResultSize();
+        phases.add(phase("lucene count", indexHits, countStart));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("criteria", criteria);
+        result.put("lucene", query.toString());
+        result.put("sort", sort.toString());
+        result.put("hits", (ids != null ? ids.size() : 0));
+        result.put("phases", phases);
+        result.put("totalMillis", millis(start));
+        return result;
+    }
+
+    private static List<Book> phase(List<Map<String, Object>> phases, String name, Supplier<List<Book>> search) {
+        long start = System.nanoTime();
+        List<Book> books = search.get();
+        phases.add(phase(name, books.size(), start));
+        return books;
+    }
+
+    private static Map<String, Object> phase(String name, int hits, long start) {
+        Map<String, Object> phase = new LinkedHashMap<>();
+        phase.put("name", name);
+        phase.put("hits", hits);
+        phase.put("millis", millis(start));
+        return phase;
+    }
+
+    private static Set<Integer> retain(Set<Integer> ids, List<Book> books) {
+        Set<Integer> matching = new HashSet<>();
+        books.forEach(book -> matching.add(book.getId()));
+        if (ids != null) {
+            matching.retainAll(ids);
+        }
+        return matching;
+    }
+
+    private static double millis(long start) {
+        return (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
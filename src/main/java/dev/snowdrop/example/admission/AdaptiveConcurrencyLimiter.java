@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit with a bounded wait queue, adapted to measured latency (AIMD).
+ * <p>
+ * While saturated and fast, the limit grows by about one per limit's worth of completed calls;
+ * every call slower than the latency target cuts it by the backoff ratio.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Permit {
+        ACQUIRED, QUEUE_FULL, TIMED_OUT
+    }
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long latencyTargetNanos;
+
+    private volatile double limit;
+    private int inFlight;
+    private int waiting;
+
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, int maxQueue, long latencyTarget, TimeUnit unit) {
+        if (minLimit < 1 || maxLimit < minLimit || maxQueue < 0) {
+            throw new IllegalArgumentException(String.format("Invalid limits: min=%d, max=%d, queue=%d", minLimit, maxLimit, maxQueue));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.latencyTargetNanos = unit.toNanos(latencyTarget);
+        this.limit = maxLimit;
+    }
+
+    public Permit acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < getLimit()) {
+                inFlight++;
+                return Permit.ACQUIRED;
+            }
+            if (waiting >= maxQueue) {
+                return Permit.QUEUE_FULL;
+            }
+
+            long nanos = unit.toNanos(timeout);
+            waiting++;
+            try {
+                while (inFlight >= getLimit()) {
+                    if (nanos <= 0) {
+                        return Permit.TIMED_OUT;
+                    }
+                    nanos = released.awaitNanos(nanos);
+                }
+                inFlight++;
+                return Permit.ACQUIRED;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a permit obtained by {@link #acquire(long, TimeUnit)}.
+     *
+     * @param latencyNanos time the call held the permit
+     */
+    public void release(long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = (inFlight >= getLimit());
+            inFlight--;
+            if (latencyNanos > latencyTargetNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Number of calls waiting in the queue.
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.admission;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnProperty(name = "books.admission.enabled", matchIfMissing = true)
+public class AdmissionControlConfiguration implements WebMvcConfigurer {
+
+    @Value("${books.admission.min-concurrency:1}")
+    private int minConcurrency;
+
+    @Value("${books.admission.max-concurrency:#{T(java.lang.Runtime).getRuntime().availableProcessors() * 2}}")
+    private int maxConcurrency;
+
+    @Value("${books.admission.queue-size:50}")
+    private int queueSize;
+
+    /**
+     * Request threads all admission controlled calls may hold together, running or waiting;
+     * half of the connector's threads by default.
+     */
+    @Value("${books.admission.max-threads:#{${server.tomcat.max-threads:200} / 2}}")
+    private int maxThreads;
+
+    @Value("${books.admission.queue-timeout-ms:500}")
+    private long queueTimeoutMillis;
+
+    @Value("${books.admission.latency-target-ms:250}")
+    private long latencyTargetMillis;
+
+    @Value("${books.admission.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Bean
+    public AdmissionControlInterceptor admissionControlInterceptor() {
+        return new AdmissionControlInterceptor(
+            () -> new AdaptiveConcurrencyLimiter(minConcurrency, maxConcurrency, queueSize, latencyTargetMillis, TimeUnit.MILLISECONDS),
+            maxThreads, queueTimeoutMillis, retryAfterSeconds);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor())
+            .addPathPatterns("/api/books/**");
+    }
+}
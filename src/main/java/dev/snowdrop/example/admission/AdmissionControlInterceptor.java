@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.admission;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Admits calls to {@link AdmissionControlled} handlers through a limiter per handler method.
+ * <p>
+ * Running and waiting calls of all these handlers together hold at most {@code maxThreads} request threads,
+ * so they can never take all threads of the connector from the other handlers.
+ * A call which finds this budget used up or the wait queue full is rejected with 503, one which waits longer
+ * than the queue timeout with 429; both carry a Retry-After header. Other handlers are never delayed.
+ */
+public class AdmissionControlInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String ADMISSION = AdmissionControlInterceptor.class.getName() + ".admission";
+
+    private final ConcurrentMap<Method, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final Supplier<AdaptiveConcurrencyLimiter> limiterFactory;
+    private final Semaphore threads;
+    private final long queueTimeoutMillis;
+    private final int retryAfterSeconds;
+
+    public AdmissionControlInterceptor(Supplier<AdaptiveConcurrencyLimiter> limiterFactory, int maxThreads,
+                                       long queueTimeoutMillis, int retryAfterSeconds) {
+        this.limiterFactory = limiterFactory;
+        this.threads = new Semaphore(maxThreads);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Limiter of the given {@link AdmissionControlled} handler method.
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(Method handlerMethod) {
+        return limiters.computeIfAbsent(handlerMethod, m -> limiterFactory.get());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod) || !((HandlerMethod) handler).hasMethodAnnotation(AdmissionControlled.class)) {
+            return true;
+        }
+
+        AdaptiveConcurrencyLimiter limiter = getLimiter(((HandlerMethod) handler).getMethod());
+        AdaptiveConcurrencyLimiter.Permit permit = AdaptiveConcurrencyLimiter.Permit.QUEUE_FULL;
+        if (threads.tryAcquire()) {
+            try {
+                permit = limiter.acquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (permit == AdaptiveConcurrencyLimiter.Permit.ACQUIRED) {
+                request.setAttribute(ADMISSION, new Admission(limiter, System.nanoTime()));
+                return true;
+            }
+            threads.release();
+        }
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        HttpStatus status = (permit == AdaptiveConcurrencyLimiter.Permit.QUEUE_FULL ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS);
+        response.sendError(status.value(), "Too many concurrent search requests");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Admission admission = (Admission) request.getAttribute(ADMISSION);
+        if (admission != null) {
+            request.removeAttribute(ADMISSION);
+            admission.limiter.release(System.nanoTime() - admission.start);
+            threads.release();
+        }
+    }
+
+    private static class Admission {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final long start;
+
+        private Admission(AdaptiveConcurrencyLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+    }
+}
@@ -34,6 +34,8 @@ public class Book {
 
     @Id
     @DocumentId
+    @Field(name = "idSort", analyze = Analyze.NO)
+    @SortableField(forField = "idSort") // tie-breaker for search-after paging
     private Integer id;
 
     @Field
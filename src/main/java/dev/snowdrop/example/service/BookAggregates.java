@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-author and per-year aggregates of the store, updated by every write instead of computed on request.
+ * Reading a whole view is O(k) in its number of keys, the newest book of a single author O(1).
+ * <p>
+ * Clearing the store sends no entry events; the views are emptied on the {@link BookStoreClearedEvent} instead.
+ */
+@Component
+@Listener(observation = Listener.Observation.POST, includeCurrentState = true)
+public class BookAggregates {
+
+    private final Cache<Integer, Book> store;
+    private final Lock lock = new ReentrantLock();
+    private Views views = new Views();
+
+    @Autowired
+    public BookAggregates(Cache<Integer, Book> store) {
+        this.store = store;
+    }
+
+    @PostConstruct
+    public void start() {
+        store.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        store.removeListener(this);
+    }
+
+    @CacheEntryCreated
+    public void created(CacheEntryCreatedEvent<Integer, Book> event) {
+        put(event.getKey(), event.getValue());
+    }
+
+    @CacheEntryModified
+    public void modified(CacheEntryModifiedEvent<Integer, Book> event) {
+        put(event.getKey(), event.getValue());
+    }
+
+    @CacheEntryRemoved
+    public void removed(CacheEntryRemovedEvent<Integer, Book> event) {
+        put(event.getKey(), null);
+    }
+
+    @EventListener
+    public void cleared(BookStoreClearedEvent event) {
+        lock.lock();
+        try {
+            views = new Views();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Integer id, Book book) {
+        lock.lock();
+        try {
+            views.put(id, (book != null ? new Entry(book) : null));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Integer> countByAuthor() {
+        lock.lock();
+        try {
+            return new TreeMap<>(views.countByAuthor);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<Integer, Integer> countByYear() {
+        lock.lock();
+        try {
+            return new TreeMap<>(views.countByYear);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Id of the newest book of every author.
+     */
+    public Map<String, Integer> latestByAuthor() {
+        lock.lock();
+        try {
+            Map<String, Integer> latest = new TreeMap<>();
+            views.releasesByAuthor.forEach((author, releases) -> latest.put(author, releases.lastEntry().getValue().last()));
+            return latest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Id of the newest book of the author, or null if there is none.
+     */
+    public Integer latestOf(String author) {
+        lock.lock();
+        try {
+            NavigableMap<LocalDate, TreeSet<Integer>> releases = views.releasesByAuthor.get(author);
+            return (releases != null ? releases.lastEntry().getValue().last() : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Recomputes all views from the store and replaces the maintained ones.
+     *
+     * @return whether the maintained views matched the recomputed ones
+     */
+    public boolean rebuild() {
+        lock.lock();
+        try {
+            Views rebuilt = new Views();
+            store.forEach((id, book) -> rebuilt.put(id, new Entry(book)));
+            boolean consistent = rebuilt.equals(views);
+            views = rebuilt;
+            return consistent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Entry {
+        private final String author;
+        private final LocalDate releaseDate;
+
+        private Entry(Book book) {
+            this.author = book.getAuthor();
+            this.releaseDate = book.getReleaseDate();
+        }
+    }
+
+    private static class Views {
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        private final Map<String, Integer> countByAuthor = new HashMap<>();
+        private final Map<Integer, Integer> countByYear = new HashMap<>();
+        private final Map<String, NavigableMap<LocalDate, TreeSet<Integer>>> releasesByAuthor = new HashMap<>();
+
+        private void put(Integer id, Entry entry) {
+            Entry previous = (entry != null ? entries.put(id, entry) : entries.remove(id));
+            if (previous != null) {
+                remove(id, previous);
+            }
+            if (entry != null) {
+                add(id, entry);
+            }
+        }
+
+        private void add(Integer id, Entry entry) {
+            if (entry.author != null) {
+                countByAuthor.merge(entry.author, 1, Integer::sum);
+                if (entry.releaseDate != null) {
+                    releasesByAuthor.computeIfAbsent(entry.author, author -> new TreeMap<>())
+                        .computeIfAbsent(entry.releaseDate, date -> new TreeSet<>())
+                        .add(id);
+                }
+            }
+            if (entry.releaseDate != null) {
+                countByYear.merge(entry.releaseDate.getYear(), 1, Integer::sum);
+            }
+        }
+
+        private void remove(Integer id, Entry entry) {
+            if (entry.author != null) {
+                decrement(countByAuthor, entry.author);
+                NavigableMap<LocalDate, TreeSet<Integer>> releases = releasesByAuthor.get(entry.author);
+                if (releases != null && entry.releaseDate != null) {
+                    TreeSet<Integer> ids = releases.get(entry.releaseDate);
+                    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                        releases.remove(entry.releaseDate);
+                        if (releases.isEmpty()) {
+                            releasesByAuthor.remove(entry.author);
+                        }
+                    }
+                }
+            }
+            if (entry.releaseDate != null) {
+                decrement(countByYear, entry.releaseDate.getYear());
+            }
+        }
+
+        private static <K> void decrement(Map<K, Integer> counts, K key) {
+            counts.computeIfPresent(key, (k, count) -> (count > 1 ? count - 1 : null));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Views)) {
+                return false;
+            }
+            Views other = (Views) obj;
+            return countByAuthor.equals(other.countByAuthor)
+                && countByYear.equals(other.countByYear)
+                && releasesByAuthor.equals(other.releasesByAuthor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(countByAuthor, countByYear, releasesByAuthor);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.infinispan.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Operations that touch many books at once.
+ * <p>
+ * Matching ids are collected from the index. With {@code books.bulk.batch-size} set, the books are then removed
+ * in invocation batches of at most that many books, so the index sees one change set per batch instead of one
+ * commit per book, while the locks and changes held until a commit stay bounded. A failed batch is rolled back
+ * alone; the batches before it stay committed. Without it, the default, books are removed one at a time.
+ * <p>
+ * Invocation batching makes the store transactional, so that every other write runs in an implicit transaction
+ * of its own. This is why it is only enabled together with {@code books.bulk.batch-size}.
+ */
+@Component
+public class BookBulkOperations {
+
+    private final BookRepository repository;
+    private final Cache<Integer, Book> store;
+    private final int batchSize;
+
+    @Autowired
+    public BookBulkOperations(BookRepository repository, Cache<Integer, Book> store, @Value("${books.bulk.batch-size:0}") int batchSize) {
+        this.repository = repository;
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Ids of all books matching every criterion set on the query; paging and ordering are ignored.
+     */
+    public Set<Integer> findIds(BookQuery query) {
+        Set<Integer> ids = null;
+        if (query.getReleaseDate() != null) {
+            ids = retain(ids, repository.findByReleaseDate(query.getReleaseDate()));
+        }
+        if (StringUtils.hasLength(query.getAuthor())) {
+            ids = retain(ids, repository.findByAuthor(query.getAuthor()));
+        }
+        if (StringUtils.hasLength(query.getContent())) {
+            ids = retain(ids, repository.findByContentContains(query.getContent()));
+        }
+        return (ids != null ? ids : Collections.emptySet());
+    }
+
+    /**
+     * Removes all books matching the query.
+     *
+     * @return number of removed books
+     */
+    public int deleteByQuery(BookQuery query) {
+        Set<Integer> ids = findIds(query);
+        // books removed by someone else since the search are not counted
+        int removed = 0;
+        Iterator<Integer> remaining = ids.iterator();
+        while (remaining.hasNext()) {
+            removed += (batchSize > 0 ? removeBatch(remaining) : remove(remaining.next()));
+        }
+        return removed;
+    }
+
+    private int removeBatch(Iterator<Integer> ids) {
+        int removed = 0;
+        boolean success = false;
+        store.startBatch();
+        try {
+            for (int i = 0; i < batchSize && ids.hasNext(); i++) {
+                removed += remove(ids.next());
+            }
+            success = true;
+        } finally {
+            store.endBatch(success);
+        }
+        return removed;
+    }
+
+    private int remove(Integer id) {
+        return (store.remove(id) != null ? 1 : 0);
+    }
+
+    private static Set<Integer> retain(Set<Integer> ids, Stream<Book> books) {
+        try (Stream<Book> stream = books) {
+            Set<Integer> matching = stream.map(Book::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+            if (ids != null) {
+                matching.retainAll(ids);
+            }
+            return matching;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+/**
+ * A single change of the book store, as sent by {@link BookChangeFeed}.
+ */
+public class BookChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Integer id;
+    private final Book book;
+
+    public BookChange(long sequence, Type type, Integer id, Book book) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.book = book;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    /**
+     * The book after the change, null for {@link Type#DELETED}.
+     */
+    public Book getBook() {
+        return book;
+    }
+}
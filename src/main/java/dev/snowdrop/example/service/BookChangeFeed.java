@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Stream of store changes for clients keeping a local copy of the books.
+ * <p>
+ * Every change gets the next sequence number, sent as the event id. The last {@code books.changes.history}
+ * changes are kept, so a client can resume from the last sequence it has seen; if that sequence is no longer
+ * available, the client first gets a {@code reset} event and has to reload all books.
+ * Clearing the store sends no entry events, so it is published as a {@code reset} event to every client instead.
+ * <p>
+ * Every client has its own queue of at most {@code books.changes.buffer} events, sent in sequence order by a
+ * sender thread of its own while the queue is not empty, so a slow client delays nobody else. A client falling
+ * further behind is disconnected and resumes from its last event id when it reconnects; one that would have to
+ * catch up on more changes than that gets a {@code reset} instead.
+ */
+@Component
+@Listener(observation = Listener.Observation.POST)
+public class BookChangeFeed {
+
+    private final Cache<Integer, Book> store;
+    private final int historySize;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    private final Lock lock = new ReentrantLock();
+    private final Deque<BookChange> history = new ArrayDeque<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger senderCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newCachedThreadPool(
+        r -> new Thread(r, "book-change-feed-" + senderCount.incrementAndGet()));
+    private long sequence;
+
+    @Autowired
+    public BookChangeFeed(Cache<Integer, Book> store,
+                          @Value("${books.changes.history:10000}") int historySize,
+                          @Value("${books.changes.buffer:1000}") int bufferSize,
+                          @Value("${books.changes.timeout-ms:1800000}") long timeoutMillis) {
+        this.store = store;
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        store.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        store.removeListener(this);
+        senders.shutdown();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * Subscribes to changes following the given sequence, or to new changes only if it is null.
+     */
+    public SseEmitter subscribe(Long since) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+
+        lock.lock();
+        try {
+            List<BookChange> replay = new ArrayList<>();
+            boolean reset = false;
+            if (since != null) {
+                long oldest = (history.isEmpty() ? sequence + 1 : history.peekFirst().getSequence());
+                reset = (since < oldest - 1 || since > sequence || sequence - since > bufferSize);
+                if (!reset) {
+                    history.stream().filter(change -> change.getSequence() > since).forEach(replay::add);
+                }
+            }
+            subscribers.add(subscriber);
+            if (reset) {
+                subscriber.offer(resetEvent(sequence));
+            } else {
+                replay.forEach(change -> subscriber.offer(event(change)));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return subscriber.emitter;
+    }
+
+    @CacheEntryCreated
+    public void created(CacheEntryCreatedEvent<Integer, Book> event) {
+        publish(BookChange.Type.CREATED, event.getKey(), event.getValue());
+    }
+
+    @CacheEntryModified
+    public void modified(CacheEntryModifiedEvent<Integer, Book> event) {
+        if (!event.isCreated()) {
+            publish(BookChange.Type.UPDATED, event.getKey(), event.getValue());
+        }
+    }
+
+    @CacheEntryRemoved
+    public void removed(CacheEntryRemovedEvent<Integer, Book> event) {
+        publish(BookChange.Type.DELETED, event.getKey(), null);
+    }
+
+    @EventListener
+    public void cleared(BookStoreClearedEvent event) {
+        lock.lock();
+        try {
+            // the removed books are unknown, so no earlier sequence can be resumed from
+            long current = ++sequence;
+            history.clear();
+            subscribers.forEach(subscriber -> subscriber.offer(resetEvent(current)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(BookChange.Type type, Integer id, Book book) {
+        lock.lock();
+        try {
+            BookChange change = new BookChange(++sequence, type, id, book);
+            history.addLast(change);
+            if (history.size() > historySize) {
+                history.removeFirst();
+            }
+            // later subscribers get this change through their replay
+            subscribers.forEach(subscriber -> subscriber.offer(event(change)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(BookChange change) {
+        return SseEmitter.event()
+            .id(String.valueOf(change.getSequence()))
+            .name(change.getType().name().toLowerCase())
+            .data(change);
+    }
+
+    private static SseEmitter.SseEventBuilder resetEvent(long sequence) {
+        return SseEmitter.event().id(String.valueOf(sequence)).name("reset").data("");
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        // guarded by this
+        private final Queue<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean sending;
+        private boolean dropped;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues the event, and starts sending if nothing is being sent yet. Never blocks on the client.
+         */
+        private synchronized void offer(SseEmitter.SseEventBuilder event) {
+            if (dropped) {
+                return;
+            }
+            if (pending.size() >= bufferSize) {
+                // too far behind; the client resumes from its last event id when it reconnects
+                pending.clear();
+                dropped = true;
+                subscribers.remove(this);
+            } else {
+                pending.add(event);
+            }
+            if (!sending) {
+                sending = true;
+                senders.execute(this::sendPending);
+            }
+        }
+
+        private void sendPending() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = (dropped ? null : pending.poll());
+                    if (event == null) {
+                        sending = false;
+                        if (dropped) {
+                            break;
+                        }
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        pending.clear();
+                        dropped = true;
+                        sending = false;
+                    }
+                    subscribers.remove(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+            emitter.complete();
+        }
+    }
+}
@@ -16,7 +16,11 @@
 
 package dev.snowdrop.example.service;
 
+import static dev.snowdrop.example.web.BookMediaTypes.APPLICATION_CBOR_VALUE;
+import static dev.snowdrop.example.web.BookMediaTypes.APPLICATION_SMILE_VALUE;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -26,9 +30,11 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import dev.snowdrop.example.admission.AdmissionControlled;
 import dev.snowdrop.example.exception.NotFoundException;
 import dev.snowdrop.example.exception.UnprocessableEntityException;
 import dev.snowdrop.example.exception.UnsupportedMediaTypeException;
+import org.apache.lucene.search.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -43,28 +49,42 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Controller
-@RequestMapping(value = "/api/books")
+@RequestMapping(value = "/api/books", produces = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
 public class BookController {
 
     private final BookRepository repository;
+    private final BookBulkOperations bulkOperations;
+    private final BookChangeFeed changeFeed;
+    private final BookLuceneQueries queries;
+    private final ShardedBookSearch shardedSearch;
+    private final BookWriteCoalescer writeCoalescer;
 
     @Autowired
-    public BookController(BookRepository repository) {
+    public BookController(BookRepository repository, BookBulkOperations bulkOperations, BookChangeFeed changeFeed,
+                          BookLuceneQueries queries, ShardedBookSearch shardedSearch, BookWriteCoalescer writeCoalescer) {
         this.repository = repository;
+        this.bulkOperations = bulkOperations;
+        this.changeFeed = changeFeed;
+        this.queries = queries;
+        this.shardedSearch = shardedSearch;
+        this.writeCoalescer = writeCoalescer;
     }
 
     private Book save(Book book) {
         return repository.save(book);
     }
 
+    @AdmissionControlled
     @ResponseBody
-    @GetMapping(path = "/findAuthors", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(path = "/findAuthors")
     public List<Book> findAuthors(@RequestParam(name = "author", required = false) String author) {
         if (author != null && author.length() > 0) {
             return repository.findByAuthorLike(author);
@@ -73,23 +93,31 @@ public class BookController {
         }
     }
 
+    @AdmissionControlled
     @ResponseBody
-    @GetMapping(path = "/findTitle", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(path = "/findTitle")
     public Stream<Book> findByTitle(@RequestParam(name = "title") String title) {
         return repository.findByTitleLike(title);
     }
 
+    @AdmissionControlled
     @ResponseBody
-    @GetMapping(path = "/findWord", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(path = "/findWord")
     public List<Book> findByContent(@RequestParam(name = "word") String word) {
         return repository.findByContentContains(word, PageRequest.of(0, 100));
     }
 
+    @AdmissionControlled
     @ResponseBody
-    @PostMapping(path = "/findForm", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @PostMapping(path = "/findForm", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
     public List<Book> findForm(@RequestBody BookQuery example) {
+        Sort.Direction direction = Sort.Direction.fromString(example.getDirection());
+        if (shardedSearch.isSharded()) {
+            return shardedSearch.search(queries.byExample(example), queries.sort(example.getOrderBy(), direction), example.getMaxResults());
+        }
+
         // TODO -- better intersection logic / code
-        Pageable pageable = PageRequest.of(0, example.getMaxResults(), Sort.Direction.fromString(example.getDirection()), example.getOrderBy());
+        Pageable pageable = PageRequest.of(0, example.getMaxResults(), direction, example.getOrderBy());
         Collection<Book> books = new LinkedHashSet<>();
         if (example.getReleaseDate() != null) {
             List<Book> byReleaseDate = repository.findByReleaseDate(example.getReleaseDate(), pageable);
@@ -112,8 +140,48 @@ public class BookController {
         return new ArrayList<>(books);
     }
 
+    @AdmissionControlled
+    @ResponseBody
+    @PostMapping(path = "/findPage", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
+    public BookPage findPage(@RequestBody BookQuery example) {
+        String orderBy = example.getOrderBy();
+        Sort.Direction direction = Sort.Direction.fromString(example.getDirection());
+        if (!BookPageToken.isSortable(orderBy)) {
+            throw new UnprocessableEntityException("Pages can only be ordered by author or releaseDate");
+        }
+        int maxResults = example.getMaxResults();
+        if (maxResults <= 0) {
+            throw new UnprocessableEntityException("maxResults must be greater than zero");
+        }
+
+        Query query = queries.byExampleOrAll(example);
+        if (example.getPageToken() != null) {
+            BookPageToken after = BookPageToken.decode(example.getPageToken());
+            if (!after.matches(orderBy, direction)) {
+                throw new UnprocessableEntityException("Page token was issued for a different order");
+            }
+            query = queries.and(Arrays.asList(query, queries.after(orderBy, direction, after.getValue(), after.getId())));
+        }
+
+        List<Book> books = shardedSearch.search(query, queries.sortWithId(orderBy, direction), maxResults);
+        String next = (books.size() == maxResults ? BookPageToken.after(books.get(maxResults - 1), orderBy, direction).encode() : null);
+        return new BookPage(books, next);
+    }
+
     @ResponseBody
-    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PostMapping(path = "/deleteForm", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
+    public int deleteForm(@RequestBody BookQuery example) {
+        return bulkOperations.deleteByQuery(example);
+    }
+
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId,
+                              @RequestParam(name = "since", required = false) Long since) {
+        return changeFeed.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    @ResponseBody
+    @GetMapping(value = "/{id}")
     public Book get(@PathVariable("id") Integer id) {
         verifyBookExists(id);
 
@@ -121,7 +189,7 @@ public class BookController {
     }
 
     @ResponseBody
-    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping
     public List<Book> getAll() {
         Spliterator<Book> books = repository.findAll().spliterator();
         return StreamSupport.stream(books, false).collect(Collectors.toList());
@@ -129,7 +197,7 @@ public class BookController {
 
     @ResponseBody
     @ResponseStatus(HttpStatus.CREATED)
-    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
     public Book post(@RequestBody(required = false) Book book) {
         Integer newId = verifyCorrectPayload(book);
         book.setId(newId);
@@ -139,13 +207,13 @@ public class BookController {
 
     @ResponseBody
     @ResponseStatus(HttpStatus.OK)
-    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @PutMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
     public Book put(@PathVariable("id") Integer id, @RequestBody(required = false) Book book) {
         verifyBookExists(id);
         verifyCorrectPayload(book);
 
         book.setId(id);
-        return save(book);
+        return writeCoalescer.save(book);
     }
 
     @ResponseStatus(HttpStatus.NO_CONTENT)
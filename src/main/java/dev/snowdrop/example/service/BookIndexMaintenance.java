@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.hibernate.search.indexes.spi.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.spi.SearchIntegrator;
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.infinispan.query.Search;
+import org.infinispan.query.SearchManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the book index compact: merges segments and expunges deleted documents once the index has
+ * too many of either, but only inside the maintenance window and after the store has been quiet for a while.
+ * Also reports index statistics and rebuilds the index from the cache on demand.
+ */
+@Component
+@Listener(observation = Listener.Observation.POST)
+public class BookIndexMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(BookIndexMaintenance.class);
+
+    private final Cache<Integer, Book> store;
+    private final SearchManager searchManager;
+    private final SearchIntegrator integrator;
+    private final List<String> indexNames;
+
+    @Value("${books.index.maintenance.window-start:00:00}")
+    private String windowStartValue;
+
+    @Value("${books.index.maintenance.window-end:23:59:59}")
+    private String windowEndValue;
+
+    @Value("${books.index.maintenance.quiet-ms:60000}")
+    private long quietMillis;
+
+    @Value("${books.index.maintenance.max-deleted-ratio:0.1}")
+    private double maxDeletedRatio;
+
+    @Value("${books.index.maintenance.max-segments:10}")
+    private int maxSegments;
+
+    private LocalTime windowStart;
+    private LocalTime windowEnd;
+
+    private final AtomicLong lastWrite = new AtomicLong(System.nanoTime());
+    private final AtomicReference<CompletableFuture<Void>> reindexing = new AtomicReference<>();
+
+    @Autowired
+    public BookIndexMaintenance(Cache<Integer, Book> store, ShardedBookSearch shardedSearch) {
+        this.store = store;
+        this.searchManager = Search.getSearchManager(store);
+        this.integrator = searchManager.unwrap(SearchIntegrator.class);
+        this.indexNames = shardedSearch.getShardNames();
+    }
+
+    @PostConstruct
+    public void start() {
+        windowStart = LocalTime.parse(windowStartValue);
+        windowEnd = LocalTime.parse(windowEndValue);
+        store.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        store.removeListener(this);
+    }
+
+    @CacheEntryCreated
+    @CacheEntryModified
+    @CacheEntryRemoved
+    public void written(CacheEntryEvent<Integer, Book> event) {
+        lastWrite.set(System.nanoTime());
+    }
+
+    @Scheduled(fixedDelayString = "${books.index.maintenance.interval-ms:300000}")
+    public void maintain() {
+        if (!isQuiet() || isReindexing()) {
+            return;
+        }
+        for (String indexName : indexNames) {
+            Map<String, Object> stats = stats(indexName);
+            double deletedRatio = (Double) stats.get("deletedRatio");
+            int segments = (Integer) stats.get("segments");
+            if (deletedRatio > maxDeletedRatio || segments > maxSegments) {
+                log.info("Merging index {}: {} segments, {} deleted ratio", indexName, segments, deletedRatio);
+                merge(indexName);
+            }
+        }
+    }
+
+    private boolean isQuiet() {
+        LocalTime now = LocalTime.now();
+        boolean inWindow = (windowStart.isAfter(windowEnd)
+            ? !now.isBefore(windowStart) || !now.isAfter(windowEnd)
+            : !now.isBefore(windowStart) && !now.isAfter(windowEnd));
+        return inWindow && System.nanoTime() - lastWrite.get() >= TimeUnit.MILLISECONDS.toNanos(quietMillis);
+    }
+
+    /**
+     * Merges the segments of every shard and expunges deleted documents, regardless of the window.
+     */
+    public void mergeAll() {
+        indexNames.forEach(this::merge);
+    }
+
+    private void merge(String indexName) {
+        integrator.getIndexManager(indexName).optimize();
+    }
+
+    /**
+     * Rebuilds the index from the cache in the background. Searches are not blocked, but may miss books until it completes.
+     *
+     * @return false if a rebuild is already running
+     */
+    public boolean reindex() {
+        CompletableFuture<Void> running = reindexing.get();
+        if (running != null && !running.isDone()) {
+            return false;
+        }
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        if (!reindexing.compareAndSet(running, started)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        searchManager.getMassIndexer().startAsync().whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Reindexing books failed", error);
+                started.completeExceptionally(error);
+            } else {
+                log.info("Reindexed books in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                started.complete(null);
+            }
+        });
+        return true;
+    }
+
+    public boolean isReindexing() {
+        CompletableFuture<Void> running = reindexing.get();
+        return (running != null && !running.isDone());
+    }
+
+    /**
+     * Versions of the last commit of every shard. A shard gets a new version with every commit, so the result
+     * changes whenever a write reaches the index.
+     *
+     * @return the versions, or null if a shard is not kept in a directory or has no commit yet
+     */
+    public String commitVersions() {
+        StringBuilder versions = new StringBuilder();
+        for (String indexName : indexNames) {
+            IndexManager indexManager = integrator.getIndexManager(indexName);
+            if (!(indexManager instanceof DirectoryBasedIndexManager)) {
+                return null;
+            }
+            Directory directory = ((DirectoryBasedIndexManager) indexManager).getDirectoryProvider().getDirectory();
+            try {
+                versions.append(indexName).append('=').append(SegmentInfos.readLatestCommit(directory).getVersion()).append(';');
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return versions.toString();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<Map<String, Object>> shards = new ArrayList<>();
+        int documents = 0;
+        int deleted = 0;
+        int segments = 0;
+        long bytes = 0;
+        for (String indexName : indexNames) {
+            Map<String, Object> shard = stats(indexName);
+            documents += (Integer) shard.get("documents");
+            deleted += (Integer) shard.get("deletedDocuments");
+            segments += (Integer) shard.get("segments");
+            bytes += (Long) shard.get("sizeInBytes");
+            shards.add(shard);
+        }
+        result.put("documents", documents);
+        result.put("deletedDocuments", deleted);
+        result.put("deletedRatio", ratio(deleted, documents));
+        result.put("segments", segments);
+        result.put("sizeInBytes", bytes);
+        result.put("reindexing", isReindexing());
+        result.put("shards", shards);
+        return result;
+    }
+
+    private Map<String, Object> stats(String indexName) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", indexName);
+        IndexReaderAccessor readers = integrator.getIndexReaderAccessor();
+        IndexReader reader = readers.open(indexName);
+        try {
+            stats.put("documents", reader.numDocs());
+            stats.put("deletedDocuments", reader.numDeletedDocs());
+            stats.put("deletedRatio", ratio(reader.numDeletedDocs(), reader.numDocs()));
+            stats.put("segments", reader.leaves().size());
+        } finally {
+            readers.close(reader);
+        }
+
+        IndexManager indexManager = integrator.getIndexManager(indexName);
+        long bytes = 0;
+        String storage = "unknown";
+        if (indexManager instanceof DirectoryBasedIndexManager) {
+            Directory directory = ((DirectoryBasedIndexManager) indexManager).getDirectoryProvider().getDirectory();
+            storage = directory.getClass().getSimpleName();
+            try {
+                for (String file : directory.listAll()) {
+                    bytes += fileLength(directory, file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        stats.put("storage", storage);
+        stats.put("sizeInBytes", bytes);
+        return stats;
+    }
+
+    private static long fileLength(Directory directory, String file) throws IOException {
+        try {
+            return directory.fileLength(file);
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return 0; // removed by a concurrent merge
+        }
+    }
+
+    private static double ratio(int deleted, int documents) {
+        return (deleted + documents == 0 ? 0 : deleted / (double) (deleted + documents));
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermRangeQuery;
+import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.query.dsl.sort.SortFieldContext;
+import org.infinispan.Cache;
+import org.infinispan.query.CacheQuery;
+import org.infinispan.query.Search;
+import org.infinispan.query.SearchManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Lucene queries equivalent to the {@link BookRepository} derived queries, for use directly against the index.
+ */
+@Component
+public class BookLuceneQueries {
+
+    private final SearchManager searchManager;
+
+    @Autowired
+    public BookLuceneQueries(Cache<Integer, Book> store) {
+        this.searchManager = Search.getSearchManager(store);
+    }
+
+    private QueryBuilder builder() {
+        return searchManager.buildQueryBuilderForClass(Book.class).get();
+    }
+
+    public Query byAuthor(String author) {
+        return builder().keyword().onField("author").matching(author).createQuery();
+    }
+
+    public Query byAuthorLike(String author) {
+        return builder().keyword().wildcard().onField("author").matching("*" + author + "*").createQuery();
+    }
+
+    public Query byTitleLike(String title) {
+        return builder().keyword().wildcard().onField("title").matching("*" + title + "*").createQuery();
+    }
+
+    public Query byReleaseDate(LocalDate releaseDate) {
+        return builder().keyword().onField("releaseDate").matching(releaseDate).createQuery();
+    }
+
+    public Query byContentContains(String content) {
+        return builder().keyword().wildcard().onField("content").matching("*" + content + "*").createQuery();
+    }
+
+    /**
+     * Conjunction of all criteria set on the query, as combined by {@code BookController#findForm}.
+     */
+    public Query byExample(BookQuery example) {
+        List<Query> clauses = new ArrayList<>();
+        if (example.getReleaseDate() != null) {
+            clauses.add(byReleaseDate(example.getReleaseDate()));
+        }
+        if (StringUtils.hasLength(example.getAuthor())) {
+            clauses.add(byAuthor(example.getAuthor()));
+        }
+        if (StringUtils.hasLength(example.getContent())) {
+            clauses.add(byContentContains(example.getContent()));
+        }
+        return and(clauses);
+    }
+
+    /**
+     * Like {@link #byExample(BookQuery)}, but matching all books if no criteria are set.
+     */
+    public Query byExampleOrAll(BookQuery example) {
+        boolean hasCriteria = example.getReleaseDate() != null
+            || StringUtils.hasLength(example.getAuthor())
+            || StringUtils.hasLength(example.getContent());
+        return (hasCriteria ? byExample(example) : new MatchAllDocsQuery());
+    }
+
+    /**
+     * Books following the given sort value and id in the order of {@link #sortWithId(String, Direction)}.
+     * A null value stands for a book without one, which sorts after all books that have one.
+     */
+    public Query after(String orderBy, Direction direction, Object value, Integer id) {
+        QueryBuilder builder = builder();
+        Query beyondId = (direction.isAscending()
+            ? builder.range().onField("idSort").above(id).excludeLimit().createQuery()
+            : builder.range().onField("idSort").below(id).excludeLimit().createQuery());
+        Query missingValue = builder.bool()
+            .must(builder.all().createQuery())
+            .must(new TermRangeQuery(orderBy, null, null, true, true)).not()
+            .createQuery();
+        if (value == null) {
+            return builder.bool().must(missingValue).must(beyondId).createQuery();
+        }
+
+        Query beyondValue = (direction.isAscending()
+            ? builder.range().onField(orderBy).above(value).excludeLimit().createQuery()
+            : builder.range().onField(orderBy).below(value).excludeLimit().createQuery());
+        Query sameValue = builder.keyword().onField(orderBy).matching(value).createQuery();
+        return builder.bool()
+            .should(beyondValue)
+            .should(builder.bool().must(sameValue).must(beyondId).createQuery())
+            .should(missingValue)
+            .createQuery();
+    }
+
+    public Query and(List<Query> clauses) {
+        if (clauses.isEmpty()) {
+            return new MatchNoDocsQuery();
+        }
+        if (clauses.size() == 1) {
+            return clauses.get(0);
+        }
+        BooleanQuery.Builder conjunction = new BooleanQuery.Builder();
+        clauses.forEach(clause -> conjunction.add(clause, BooleanClause.Occur.MUST));
+        return conjunction.build();
+    }
+
+    /**
+     * Lucene query equivalent to the given repository method, or null if there is none. Snowdrop builds its own
+     * query for the method, which may differ in details such as the wildcards of a {@code Like} search.
+     */
+    public Query forRepositoryCall(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "findByAuthorLike":
+                return byAuthorLike((String) args[0]);
+            case "findByTitleLike":
+                return byTitleLike((String) args[0]);
+            case "findByReleaseDate":
+                return byReleaseDate((LocalDate) args[0]);
+            case "findByAuthor":
+                return byAuthor((String) args[0]);
+            case "findByContentContains":
+                return byContentContains((String) args[0]);
+            default:
+                return null;
+        }
+    }
+
+    public Sort sort(String orderBy, Direction direction) {
+        SortFieldContext field = builder().sort().byField(orderBy);
+        return (direction.isAscending() ? field.asc() : field.desc()).createSort();
+    }
+
+    /**
+     * Sort by the field, then by id, so that every book has a distinct position.
+     * Books without a value for the field come last in both directions.
+     */
+    public Sort sortWithId(String orderBy, Direction direction) {
+        SortFieldContext field = builder().sort().byField(orderBy);
+        field = (direction.isAscending() ? field.asc() : field.desc()).onMissingValue().sortLast();
+        SortFieldContext id = field.andByField("idSort");
+        return (direction.isAscending() ? id.asc() : id.desc()).createSort();
+    }
+
+    public CacheQuery<Book> query(Query query) {
+        return searchManager.getQuery(query, Book.class);
+    }
+}
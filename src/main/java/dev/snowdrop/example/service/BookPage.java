@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.List;
+
+/**
+ * A page of search results, with the token for the next page or null if this is the last one.
+ */
+public class BookPage {
+
+    private final List<Book> books;
+    private final String next;
+
+    public BookPage(List<Book> books, String next) {
+        this.books = books;
+        this.next = next;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public String getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import dev.snowdrop.example.exception.UnprocessableEntityException;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * Position after the last book of a page: its sort value and id, for the given sort.
+ * Encoded as an opaque URL-safe string; a book without a sort value leaves the value out.
+ */
+public final class BookPageToken {
+
+    private final String orderBy;
+    private final Direction direction;
+    private final Object value;
+    private final Integer id;
+
+    private BookPageToken(String orderBy, Direction direction, Object value, Integer id) {
+        this.orderBy = orderBy;
+        this.direction = direction;
+        this.value = value;
+        this.id = id;
+    }
+
+    public static boolean isSortable(String orderBy) {
+        return "author".equals(orderBy) || "releaseDate".equals(orderBy);
+    }
+
+    public static BookPageToken after(Book book, String orderBy, Direction direction) {
+        Object value = ("author".equals(orderBy) ? book.getAuthor() : book.getReleaseDate());
+        return new BookPageToken(orderBy, direction, value, book.getId());
+    }
+
+    public static BookPageToken decode(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", 4);
+            if ((parts.length == 3 || parts.length == 4) && isSortable(parts[0])) {
+                Object value = (parts.length == 3 ? null : "author".equals(parts[0]) ? parts[3] : LocalDate.parse(parts[3]));
+                return new BookPageToken(parts[0], Direction.fromString(parts[1]), value, Integer.valueOf(parts[2]));
+            }
+        } catch (RuntimeException e) {
+            // reported below
+        }
+        throw new UnprocessableEntityException("Invalid page token");
+    }
+
+    public String encode() {
+        String token = orderBy + "\n" + direction + "\n" + id + (value != null ? "\n" + value : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean matches(String orderBy, Direction direction) {
+        return this.orderBy.equals(orderBy) && this.direction == direction;
+    }
+
+    /**
+     * Sort value of the last book, or null if it has none.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+}
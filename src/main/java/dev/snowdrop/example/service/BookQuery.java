@@ -20,6 +20,7 @@ public class BookQuery extends Book {
     private int maxResults = 20;
     private String orderBy = "author";
     private String direction = "ASC";
+    private String pageToken;
 
     // used for "like"
     public BookQuery() {
@@ -51,4 +52,15 @@ public class BookQuery extends Book {
     public void setDirection(String direction) {
         this.direction = direction;
     }
+
+    /**
+     * Continuation token of a previous {@code /findPage} result; null for the first page.
+     */
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
 }
@@ -33,4 +33,10 @@ public interface BookRepository extends SnowdropCrudRepository<Book, Integer> {
     List<Book> findByAuthor(String author, Pageable pageable);
 
     List<Book> findByContentContains(String content, Pageable pageable);
+
+    Stream<Book> findByReleaseDate(LocalDate date);
+
+    Stream<Book> findByAuthor(String author);
+
+    Stream<Book> findByContentContains(String content);
 }
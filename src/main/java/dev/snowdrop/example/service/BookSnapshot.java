@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Local file holding the books of the store, written on shutdown and consumed on the next boot.
+ * <p>
+ * The snapshot goes together with a filesystem index kept in {@link #getIndexDirectory()}, so a restore
+ * only needs to load the cache; the index is already there. The data file is deleted once restored,
+ * so a crash never brings back a snapshot that no longer matches the index.
+ * <p>
+ * Writes may still reach the index after the books were read for the snapshot, so the snapshot also records
+ * the commit versions the index had before; an index which no longer has them has to be rebuilt from the books.
+ */
+public class BookSnapshot {
+
+    private final Path directory;
+    private final ObjectMapper mapper;
+
+    public BookSnapshot(Path directory, ObjectMapper mapper) {
+        this.directory = directory;
+        this.mapper = mapper;
+    }
+
+    public Path getIndexDirectory() {
+        return directory.resolve("index");
+    }
+
+    private Path getDataFile() {
+        return directory.resolve("books.json");
+    }
+
+    /**
+     * Reads and removes the snapshot.
+     *
+     * @return the snapshot, or null if there is none
+     */
+    public Contents restore() throws IOException {
+        Path file = getDataFile();
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Contents contents;
+        try (InputStream in = Files.newInputStream(file)) {
+            contents = mapper.readValue(in, Contents.class);
+        }
+        Files.delete(file);
+        return contents;
+    }
+
+    /**
+     * @param indexVersions commit versions of the index taken before the books were read
+     */
+    public void save(Collection<Book> books, String indexVersions) throws IOException {
+        Files.createDirectories(directory);
+        Path file = getDataFile();
+        Path tmp = directory.resolve(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            mapper.writeValue(out, new Contents(books, indexVersions));
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static class Contents {
+        private List<Book> books = new ArrayList<>();
+        private String indexVersions;
+
+        public Contents() {
+        }
+
+        public Contents(Collection<Book> books, String indexVersions) {
+            this.books = new ArrayList<>(books);
+            this.indexVersions = indexVersions;
+        }
+
+        public List<Book> getBooks() {
+            return books;
+        }
+
+        public void setBooks(List<Book> books) {
+            this.books = books;
+        }
+
+        /**
+         * Commit versions of the index when the snapshot was taken, or null if unknown.
+         */
+        public String getIndexVersions() {
+            return indexVersions;
+        }
+
+        public void setIndexVersions(String indexVersions) {
+            this.indexVersions = indexVersions;
+        }
+
+        /**
+         * Books keyed by id.
+         */
+        public Map<Integer, Book> toMap() {
+            Map<Integer, Book> result = new LinkedHashMap<>();
+            books.forEach(book -> result.put(book.getId(), book));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import dev.snowdrop.example.exception.NotFoundException;
+import org.infinispan.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+@Controller
+@RequestMapping(value = "/api/books/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+public class BookStatsController {
+
+    private final BookAggregates aggregates;
+    private final Cache<Integer, Book> store;
+
+    @Autowired
+    public BookStatsController(BookAggregates aggregates, Cache<Integer, Book> store) {
+        this.aggregates = aggregates;
+        this.store = store;
+    }
+
+    @ResponseBody
+    @GetMapping("/authors")
+    public Map<String, Integer> countByAuthor() {
+        return aggregates.countByAuthor();
+    }
+
+    @ResponseBody
+    @GetMapping("/years")
+    public Map<Integer, Integer> countByYear() {
+        return aggregates.countByYear();
+    }
+
+    @ResponseBody
+    @GetMapping("/latest")
+    public Map<String, Book> latestByAuthor() {
+        Map<String, Integer> ids = aggregates.latestByAuthor();
+        Map<Integer, Book> books = store.getAdvancedCache().getAll(new HashSet<>(ids.values()));
+        Map<String, Book> latest = new LinkedHashMap<>();
+        ids.forEach((author, id) -> {
+            Book book = books.get(id);
+            if (book != null) {
+                latest.put(author, book);
+            }
+        });
+        return latest;
+    }
+
+    @ResponseBody
+    @GetMapping("/authors/{author}/latest")
+    public Book latestOf(@PathVariable("author") String author) {
+        Integer id = aggregates.latestOf(author);
+        Book book = (id != null ? store.get(id) : null);
+        if (book == null) {
+            throw new NotFoundException(String.format("No book of author=%s was found", author));
+        }
+        return book;
+    }
+
+    @ResponseBody
+    @PostMapping("/rebuild")
+    public Map<String, Boolean> rebuild() {
+        return Collections.singletonMap("consistent", aggregates.rebuild());
+    }
+}
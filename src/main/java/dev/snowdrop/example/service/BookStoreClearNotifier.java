@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.AsyncInterceptorChain;
+import org.infinispan.interceptors.DDAsyncInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes a {@link BookStoreClearedEvent} after every {@link Cache#clear()} of the book store.
+ * <p>
+ * Clearing a cache sends no entry events, so views kept up to date by cache listeners would otherwise
+ * still hold all removed books. This covers every caller, including {@code BookRepository#deleteAll()}.
+ */
+@Component
+public class BookStoreClearNotifier {
+
+    private final AsyncInterceptorChain interceptors;
+    private final ApplicationEventPublisher publisher;
+    private final Cache<Integer, Book> store;
+
+    @Autowired
+    public BookStoreClearNotifier(Cache<Integer, Book> store, ApplicationEventPublisher publisher) {
+        this.store = store;
+        this.publisher = publisher;
+        this.interceptors = store.getAdvancedCache().getAsyncInterceptorChain();
+    }
+
+    @PostConstruct
+    public void start() {
+        interceptors.addInterceptor(new ClearInterceptor(), 0);
+    }
+
+    @PreDestroy
+    public void stop() {
+        interceptors.removeInterceptor(ClearInterceptor.class);
+    }
+
+    private class ClearInterceptor extends DDAsyncInterceptor {
+        @Override
+        public Object visitClearCommand(InvocationContext ctx, ClearCommand command) throws Throwable {
+            return invokeNextThenAccept(ctx, command, (rCtx, rCommand, rv) -> publisher.publishEvent(new BookStoreClearedEvent(store)));
+        }
+    }
+}
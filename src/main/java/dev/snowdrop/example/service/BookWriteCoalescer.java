@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import dev.snowdrop.example.exception.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges updates of the same book arriving within {@code books.write-coalescing.window-ms} into one save.
+ * <p>
+ * The first update of a book opens a batch; its caller waits out the window and then saves the batch on its
+ * own thread. Later updates only replace the state of the batch, so the store and the index see the last one
+ * alone. Every caller waits for that save and gets back the book it sent, as if its update had been applied
+ * and overwritten right away. Updates arriving while a batch is being saved open the next batch, which is not
+ * saved before the previous one. Batches of different books don't wait for each other.
+ * A book deleted within the window stays deleted: the batch is not saved and its callers get a
+ * {@link NotFoundException}, as if their updates had arrived after the delete.
+ * A window of 0, the default, saves every update directly.
+ */
+@Component
+public class BookWriteCoalescer {
+
+    private final BookRepository repository;
+    private final long windowMs;
+    private final ConcurrentMap<Integer, Batch> batches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookWriteCoalescer(BookRepository repository, @Value("${books.write-coalescing.window-ms:0}") long windowMs) {
+        this.repository = repository;
+        this.windowMs = windowMs;
+    }
+
+    public Book save(Book book) {
+        if (windowMs <= 0) {
+            return repository.save(book);
+        }
+
+        Batch[] opened = new Batch[1];
+        Batch batch = batches.compute(book.getId(), (id, current) -> {
+            if (current == null || current.saving) {
+                current = opened[0] = new Batch(current);
+            }
+            current.latest = book;
+            return current;
+        });
+        if (opened[0] != null) {
+            flush(book.getId(), batch);
+        }
+
+        try {
+            batch.saved.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving book with id=" + book.getId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot save book with id=" + book.getId(), e.getCause());
+        }
+        return book;
+    }
+
+    private void flush(Integer id, Batch batch) {
+        InterruptedException interrupted = null;
+        try {
+            Thread.sleep(windowMs);
+            batch.awaitPrevious();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = e;
+        }
+
+        // from here on, updates of this book go to a new batch
+        batches.computeIfPresent(id, (key, current) -> {
+            if (current == batch) {
+                batch.saving = true;
+            }
+            return current;
+        });
+        try {
+            if (interrupted != null) {
+                throw new IllegalStateException("Interrupted while saving book with id=" + id, interrupted);
+            }
+            if (!repository.existsById(id)) {
+                throw new NotFoundException(String.format("Book with id=%d was not found", id));
+            }
+            repository.save(batch.latest);
+            batch.saved.complete(null);
+        } catch (RuntimeException e) {
+            batch.saved.completeExceptionally(e);
+        } finally {
+            batches.remove(id, batch);
+        }
+    }
+
+    private static class Batch {
+        private final CompletableFuture<Void> previous;
+        private final CompletableFuture<Void> saved = new CompletableFuture<>();
+        private volatile Book latest;
+        private volatile boolean saving;
+
+        private Batch(Batch previous) {
+            this.previous = (previous != null ? previous.saved : CompletableFuture.completedFuture(null));
+        }
+
+        private void awaitPrevious() throws InterruptedException {
+            try {
+                previous.get();
+            } catch (ExecutionException e) {
+                // reported to the callers of the previous batch, this one is saved anyway
+            }
+        }
+    }
+}
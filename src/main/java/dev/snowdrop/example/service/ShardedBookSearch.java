@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.PreDestroy;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.hibernate.search.indexes.IndexReaderAccessor;
+import org.hibernate.search.spi.SearchIntegrator;
+import org.infinispan.Cache;
+import org.infinispan.query.Search;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches the shards of the book index in parallel and merges their top hits.
+ * <p>
+ * The index is split by id hash when {@code books.index.shards} is above one; each shard is then searched
+ * by its own fork-join task, on a pool of {@code books.index.search-parallelism} threads (the common pool if 0).
+ */
+@Component
+public class ShardedBookSearch {
+
+    private final Cache<Integer, Book> store;
+    private final IndexReaderAccessor readers;
+    private final List<String> shardNames = new ArrayList<>();
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public ShardedBookSearch(Cache<Integer, Book> store,
+                             @Value("${books.index.shards:1}") int shards,
+                             @Value("${books.index.search-parallelism:0}") int parallelism) {
+        this.store = store;
+        this.readers = Search.getSearchManager(store).unwrap(SearchIntegrator.class).getIndexReaderAccessor();
+        this.pool = (parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool());
+        String indexName = Book.class.getName();
+        if (shards > 1) {
+            for (int i = 0; i < shards; i++) {
+                shardNames.add(indexName + "." + i);
+            }
+        } else {
+            shardNames.add(indexName);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pool != ForkJoinPool.commonPool()) {
+            pool.shutdown();
+        }
+    }
+
+    public boolean isSharded() {
+        return shardNames.size() > 1;
+    }
+
+    /**
+     * Names of the indexes holding the books, one per shard.
+     */
+    public List<String> getShardNames() {
+        return Collections.unmodifiableList(shardNames);
+    }
+
+    /**
+     * Top books for the query, ordered by the sort or by score if the sort is null.
+     */
+    public List<Book> search(Query query, Sort sort, int maxResults) {
+        List<ForkJoinTask<ShardHits>> tasks = new ArrayList<>(shardNames.size());
+        for (String shardName : shardNames) {
+            tasks.add(pool.submit(() -> searchShard(shardName, query, sort, maxResults)));
+        }
+
+        TopDocs[] shardDocs = (sort != null ? new TopFieldDocs[tasks.size()] : new TopDocs[tasks.size()]);
+        List<Map<Integer, Integer>> shardIds = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            ShardHits hits = tasks.get(i).join();
+            shardDocs[i] = hits.docs;
+            shardIds.add(hits.ids);
+        }
+
+        TopDocs merged;
+        try {
+            merged = (sort != null ? TopDocs.merge(sort, maxResults, (TopFieldDocs[]) shardDocs) : TopDocs.merge(maxResults, shardDocs));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            ids.add(shardIds.get(scoreDoc.shardIndex).get(scoreDoc.doc));
+        }
+        Map<Integer, Book> books = store.getAdvancedCache().getAll(ids);
+        List<Book> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Book book = books.get(id);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    private ShardHits searchShard(String shardName, Query query, Sort sort, int maxResults) {
+        IndexReader reader = readers.open(shardName);
+        try {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TopDocs docs = (sort != null ? searcher.search(query, maxResults, sort) : searcher.search(query, maxResults));
+            Map<Integer, Integer> ids = new HashMap<>();
+            for (ScoreDoc scoreDoc : docs.scoreDocs) {
+                ids.put(scoreDoc.doc, Integer.valueOf(searcher.doc(scoreDoc.doc).get("id")));
+            }
+            return new ShardHits(docs, ids);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            readers.close(reader);
+        }
+    }
+
+    private static class ShardHits {
+        private final TopDocs docs;
+        private final Map<Integer, Integer> ids;
+
+        private ShardHits(TopDocs docs, Map<Integer, Integer> ids) {
+            this.docs = docs;
+            this.ids = ids;
+        }
+    }
+}
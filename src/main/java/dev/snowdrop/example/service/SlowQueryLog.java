@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.lucene.search.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs {@link BookRepository} calls slower than {@code books.slow-query.threshold-ms}, together with the
+ * equivalent Lucene query, the sort, the number of hits and the elapsed time. A negative threshold disables the log.
+ * <p>
+ * The query is not the one Snowdrop generated, which is not exposed, but the one {@link BookLuceneQueries} builds
+ * for the same method and arguments; it is logged as {@code -} for methods it has no equivalent for.
+ * A call returning a stream is timed until the stream is closed, as the search runs while the caller consumes it.
+ */
+@Component
+public class SlowQueryLog implements BeanPostProcessor, MethodInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private final ObjectProvider<BookLuceneQueries> queries;
+    private final long thresholdNanos;
+
+    public SlowQueryLog(ObjectProvider<BookLuceneQueries> queries, @Value("${books.slow-query.threshold-ms:500}") long thresholdMillis) {
+        this.queries = queries;
+        this.thresholdNanos = (thresholdMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(thresholdMillis));
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof BookRepository && thresholdNanos != Long.MAX_VALUE) {
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.addAdvice(this);
+            return proxyFactory.getProxy();
+        }
+        return bean;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Object[] args = invocation.getArguments();
+        long start = System.nanoTime();
+        Object result = invocation.proceed();
+        if (result instanceof Stream) {
+            LongAdder hits = new LongAdder();
+            return ((Stream<?>) result)
+                .peek(book -> hits.increment())
+                .onClose(() -> logIfSlow(method, args, start, String.valueOf(hits.sum())));
+        }
+        logIfSlow(method, args, start, hits(result));
+        return result;
+    }
+
+    private void logIfSlow(Method method, Object[] args, long start, String hits) {
+        long elapsed = System.nanoTime() - start;
+        if (elapsed >= thresholdNanos) {
+            Query query = queries.getObject().forRepositoryCall(method, args);
+            log.warn("Slow query {}{}: equivalent lucene=[{}], sort=[{}], hits={}, elapsed={} ms",
+                method.getName(), Arrays.toString(args), (query != null ? query : "-"), sort(args),
+                hits, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    private static String sort(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof Pageable) {
+                return ((Pageable) arg).getSort().toString();
+            }
+        }
+        return "-";
+    }
+
+    private static String hits(Object result) {
+        if (result instanceof Collection) {
+            return String.valueOf(((Collection<?>) result).size());
+        }
+        if (result instanceof Optional) {
+            return (((Optional<?>) result).isPresent() ? "1" : "0");
+        }
+        return "-";
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookStoreClearedEvent;
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.notifications.cachelistener.event.CacheEntryRemovedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * JSON encoding of every book, kept until the book changes.
+ * <p>
+ * An encoding is only reused for the very same {@link Book} instance it was made from, so a reader racing
+ * with a write can never get stale bytes; cache events just drop encodings which will not be used again.
+ * Clearing the store sends no entry events, so all encodings are dropped on the {@link BookStoreClearedEvent}.
+ * At most {@code books.json-cache.max-entries} encodings are kept; beyond that an arbitrary one makes room.
+ */
+@Component
+@ConditionalOnProperty(name = "books.json-cache.enabled")
+@Listener(observation = Listener.Observation.POST)
+public class BookJsonCache {
+
+    private final Cache<Integer, Book> store;
+    private final ObjectMapper mapper;
+    private final int maxEntries;
+    private final ConcurrentMap<Integer, Encoded> encoded = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookJsonCache(Cache<Integer, Book> store, ObjectMapper mapper,
+                         @Value("${books.json-cache.max-entries:10000}") int maxEntries) {
+        this.store = store;
+        this.mapper = mapper;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void start() {
+        store.addListener(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        store.removeListener(this);
+    }
+
+    public int size() {
+        return encoded.size();
+    }
+
+    public byte[] json(Book book) {
+        return encoded(book).json;
+    }
+
+    public byte[] gzip(Book book) {
+        Encoded current = encoded(book);
+        if (current.gzip == null) {
+            current.gzip = gzip(current.json);
+        }
+        return current.gzip;
+    }
+
+    private Encoded encoded(Book book) {
+        if (book.getId() == null) {
+            return new Encoded(book, encode(book));
+        }
+        Encoded current = encoded.get(book.getId());
+        if (current != null && current.book == book) {
+            return current;
+        }
+        // encoded outside of any map lock; losing a race only costs another encoding later
+        Encoded fresh = new Encoded(book, encode(book));
+        if (current == null) {
+            makeRoom();
+        }
+        encoded.put(book.getId(), fresh);
+        return fresh;
+    }
+
+    // concurrent puts may overshoot the bound by a few entries, which the next ones take back
+    private void makeRoom() {
+        Iterator<Integer> ids = encoded.keySet().iterator();
+        while (encoded.size() >= maxEntries && ids.hasNext()) {
+            ids.next();
+            ids.remove();
+        }
+    }
+
+    private byte[] encode(Book book) {
+        try {
+            return mapper.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode book with id=" + book.getId(), e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @CacheEntryModified
+    public void modified(CacheEntryModifiedEvent<Integer, Book> event) {
+        encoded.remove(event.getKey());
+    }
+
+    @CacheEntryRemoved
+    public void removed(CacheEntryRemovedEvent<Integer, Book> event) {
+        encoded.remove(event.getKey());
+    }
+
+    @EventListener
+    public void cleared(BookStoreClearedEvent event) {
+        encoded.clear();
+    }
+
+    private static class Encoded {
+        private final Book book;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        private Encoded(Book book, byte[] json) {
+            this.book = book;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import dev.snowdrop.example.service.Book;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Writes books and collections of books from the encodings kept by {@link BookJsonCache}.
+ * A single book is sent gzipped if the client accepts it and {@code books.json-cache.gzip} is set.
+ */
+public class BookJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private static final byte[] OPEN = {'['};
+    private static final byte[] SEPARATOR = {','};
+    private static final byte[] CLOSE = {']'};
+
+    private final BookJsonCache cache;
+    private final boolean gzip;
+
+    public BookJsonHttpMessageConverter(BookJsonCache cache, boolean gzip) {
+        super(MediaType.APPLICATION_JSON);
+        this.cache = cache;
+        this.gzip = gzip;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return (clazz == Book.class);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (type == null || clazz == Book.class) {
+            return canWrite(clazz, mediaType);
+        }
+        ResolvableType resolved = ResolvableType.forType(type);
+        return Collection.class.isAssignableFrom(resolved.resolve(Object.class))
+            && resolved.asCollection().resolveGeneric(0) == Book.class
+            && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof Book) {
+            Book book = (Book) value;
+            if (gzip && acceptsGzip()) {
+                outputMessage.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                outputMessage.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                outputMessage.getBody().write(cache.gzip(book));
+            } else {
+                outputMessage.getBody().write(cache.json(book));
+            }
+            return;
+        }
+
+        OutputStream out = outputMessage.getBody();
+        out.write(OPEN);
+        boolean first = true;
+        for (Object book : (Collection<?>) value) {
+            if (!first) {
+                out.write(SEPARATOR);
+            }
+            out.write(cache.json((Book) book));
+            first = false;
+        }
+        out.write(CLOSE);
+    }
+
+    private static boolean acceptsGzip() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return false;
+        }
+        return acceptsGzip(((ServletRequestAttributes) attributes).getRequest().getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    /**
+     * Whether the Accept-Encoding header gives gzip, or else any coding, a q-value above 0.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim();
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if ("gzip".equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                gzip = quality;
+            } else if ("*".equals(name)) {
+                any = quality;
+            }
+        }
+        double quality = (gzip != null ? gzip : (any != null ? any : 0));
+        return quality > 0;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Books are read by the Jackson converter");
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Books are read by the Jackson converter");
+    }
+}
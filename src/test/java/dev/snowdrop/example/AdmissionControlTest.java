@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.is;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.jayway.restassured.RestAssured;
+import dev.snowdrop.example.admission.AdaptiveConcurrencyLimiter;
+import dev.snowdrop.example.admission.AdmissionControlInterceptor;
+import dev.snowdrop.example.service.BookController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "books.admission.min-concurrency=1",
+    "books.admission.max-concurrency=1",
+    "books.admission.queue-size=1",
+    "books.admission.queue-timeout-ms=1000",
+    "books.admission.max-threads=1"
+})
+public class AdmissionControlTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private AdmissionControlInterceptor interceptor;
+
+    private AdaptiveConcurrencyLimiter findAuthors;
+
+    @Before
+    public void beforeTest() throws Exception {
+        RestAssured.baseURI = String.format("http://localhost:%d/api/books", port);
+        // the only permit of /findAuthors is held by the test
+        findAuthors = interceptor.getLimiter(BookController.class.getMethod("findAuthors", String.class));
+        findAuthors.acquire(0, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void afterTest() {
+        findAuthors.release(0);
+    }
+
+    @Test
+    public void testQueueTimeout() {
+        when().get("/findAuthors")
+            .then()
+            .statusCode(429)
+            .header("Retry-After", is("1"));
+    }
+
+    @Test
+    public void testThreadBudget() throws Exception {
+        CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> when().get("/findAuthors").statusCode());
+        while (findAuthors.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+
+        // the queued call holds the only thread of the budget, so other searches are turned away at once
+        when().get("/findTitle?title=godf")
+            .then()
+            .statusCode(503)
+            .header("Retry-After", is("1"));
+        // while the other handlers are not limited
+        when().get()
+            .then()
+            .statusCode(200);
+
+        queued.get(10, TimeUnit.SECONDS);
+    }
+}
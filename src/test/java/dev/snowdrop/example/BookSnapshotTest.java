@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import dev.snowdrop.example.service.BookSnapshot;
+import org.infinispan.Cache;
+import org.infinispan.context.Flag;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "books.snapshot.dir=target/snapshot-test")
+public class BookSnapshotTest {
+
+    private static final Path DATA_FILE = Paths.get("target", "snapshot-test", "books.json");
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Autowired
+    private ExampleApplication.BuildDataStore buildDataStore;
+
+    @Autowired
+    private BookSnapshot snapshot;
+
+    @Autowired
+    private Cache<Integer, Book> store;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Book sw;
+    private Book ccf;
+
+    @Before
+    public void beforeTest() throws Exception {
+        // a snapshot left by a previous run was already restored on boot
+        Files.deleteIfExists(DATA_FILE);
+        store.clear();
+        sw = BookEnum.STAR_WARS.toBook();
+        ccf = BookEnum.CCF.toBook();
+        bookRepository.save(sw);
+        bookRepository.save(ccf);
+    }
+
+    private void saveSnapshot() {
+        buildDataStore.onApplicationEvent(new ContextClosedEvent(context));
+        assertTrue(Files.exists(DATA_FILE));
+    }
+
+    private void boot() {
+        buildDataStore.onApplicationEvent(new ApplicationReadyEvent(new SpringApplication(ExampleApplication.class), new String[0], context));
+        assertFalse(Files.exists(DATA_FILE));
+        assertThat(store.size(), is(2));
+    }
+
+    private void assertIndexed() {
+        try (Stream<Book> books = bookRepository.findByAuthor(ccf.getAuthor())) {
+            assertThat(books.map(Book::getId).collect(Collectors.toList()), is(Collections.singletonList(ccf.getId())));
+        }
+    }
+
+    @Test
+    public void testIndexDirectory() {
+        assertThat(snapshot.getIndexDirectory(), is(Paths.get("target", "snapshot-test", "index")));
+        assertTrue(Files.isDirectory(snapshot.getIndexDirectory()));
+    }
+
+    @Test
+    public void testRestoreWithMatchingIndex() {
+        saveSnapshot();
+        // the cache is emptied but the filesystem index keeps both books, as after a restart
+        store.getAdvancedCache().withFlags(Flag.SKIP_INDEXING).clear();
+
+        boot();
+        assertThat(store.get(sw.getId()).getTitle(), is(sw.getTitle()));
+        assertIndexed();
+    }
+
+    @Test
+    public void testRestoreWithStaleIndex() {
+        saveSnapshot();
+        // the index no longer matches the snapshot, so the books have to be reindexed
+        store.clear();
+
+        boot();
+        assertIndexed();
+    }
+
+    @Test
+    public void testRestoreAfterLateWrite() {
+        saveSnapshot();
+        // a write arriving after the snapshot was taken reaches the index, but not the snapshot
+        Book changed = BookEnum.CCF.toBook();
+        changed.setAuthor("Quentin Blake");
+        bookRepository.save(changed);
+        store.getAdvancedCache().withFlags(Flag.SKIP_INDEXING).clear();
+
+        boot();
+        assertThat(store.get(ccf.getId()).getAuthor(), is(ccf.getAuthor()));
+        // the index is rebuilt to match the restored books
+        assertIndexed();
+        try (Stream<Book> books = bookRepository.findByAuthor("Quentin Blake")) {
+            assertThat(books.count(), is(0L));
+        }
+    }
+}
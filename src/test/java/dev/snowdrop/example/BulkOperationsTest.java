@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookBulkOperations;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookQuery;
+import dev.snowdrop.example.service.BookRepository;
+import org.infinispan.Cache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "books.bulk.batch-size=2")
+public class BulkOperationsTest {
+
+    private static final String DAHL = BookEnum.CCF.toBook().getAuthor();
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookBulkOperations bulkOperations;
+
+    @Autowired
+    private Cache<Integer, Book> store;
+
+    @Before
+    public void beforeTest() {
+        bookRepository.deleteAll();
+        bookRepository.save(BookEnum.STAR_WARS.toBook());
+        bookRepository.save(BookEnum.CCF.toBook());
+        bookRepository.save(new Book(20, "James and the Giant Peach", DAHL, "An orphan boy and a giant peach.", LocalDate.of(1961, 1, 1)));
+        bookRepository.save(new Book(21, "Matilda", DAHL, "A girl who loves to read.", LocalDate.of(1988, 10, 1)));
+        bookRepository.save(new Book(22, "The BFG", DAHL, "A big friendly giant.", LocalDate.of(1982, 1, 14)));
+    }
+
+    @Test
+    public void testBatching() {
+        assertTrue(store.getCacheConfiguration().invocationBatching().enabled());
+    }
+
+    @Test
+    public void testDeleteInBatches() {
+        BookQuery query = new BookQuery();
+        query.setAuthor(DAHL);
+        // three batches, the last one with a single book
+        assertThat(bulkOperations.deleteByQuery(query), is(4));
+
+        assertThat(store.size(), is(1));
+        assertFalse(bookRepository.existsById(BookEnum.CCF.toBook().getId()));
+        try (Stream<Book> books = bookRepository.findByAuthor(DAHL)) {
+            assertThat(books.count(), is(0L));
+        }
+        assertThat(bulkOperations.deleteByQuery(query), is(0));
+    }
+}
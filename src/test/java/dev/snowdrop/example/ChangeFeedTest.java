@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Change feed clients falling behind, with a small per-client buffer.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "books.changes.buffer=200")
+public class ChangeFeedTest {
+
+    private static final int BUFFER = 200;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private Book sw;
+
+    @Before
+    public void beforeTest() {
+        bookRepository.deleteAll();
+        sw = BookEnum.STAR_WARS.toBook();
+        bookRepository.save(sw);
+    }
+
+    private void update(int times) {
+        for (int i = 0; i < times; i++) {
+            sw.setTitle("Episode " + i);
+            bookRepository.save(sw);
+        }
+    }
+
+    @Test
+    public void testResumeTooFarBehind() throws Exception {
+        long first;
+        try (EventStream events = new EventStream("/changes")) {
+            update(1);
+            first = events.next().id;
+        }
+        update(BUFFER + 1);
+
+        // more changes to catch up on than fit in the buffer
+        try (EventStream events = new EventStream("/changes?since=" + (first - 1))) {
+            assertThat(events.next().toString(), is("reset:" + (first + BUFFER + 1)));
+        }
+        // but still within the history and the buffer
+        try (EventStream events = new EventStream("/changes?since=" + (first + 1))) {
+            assertThat(events.next().toString(), is("updated:" + (first + 2)));
+        }
+    }
+
+    @Test
+    public void testStalledClientDelaysNobody() throws Exception {
+        int updates = 10 * BUFFER;
+        try (Socket stalled = new Socket(); EventStream events = new EventStream("/changes")) {
+            // connects, but never reads the events
+            stalled.setReceiveBufferSize(1024);
+            stalled.connect(new InetSocketAddress("localhost", port));
+            OutputStream out = stalled.getOutputStream();
+            out.write(("GET /api/books/changes HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            update(1);
+            long first = events.next().id;
+            // read while writing, as a client that keeps up
+            CompletableFuture<Void> writes = CompletableFuture.runAsync(() -> update(updates - 1));
+            for (int i = 1; i < updates; i++) {
+                assertThat(events.next().toString(), is("updated:" + (first + i)));
+            }
+            writes.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private class EventStream implements AutoCloseable {
+        private final HttpURLConnection connection;
+        private final BufferedReader reader;
+
+        private EventStream(String path) throws IOException {
+            connection = (HttpURLConnection) new URL(String.format("http://localhost:%d/api/books%s", port, path)).openConnection();
+            connection.setRequestProperty("Accept", "text/event-stream");
+            connection.setReadTimeout(10000);
+            reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private Event next() throws IOException {
+            Event event = new Event();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("id:")) {
+                    event.id = Long.parseLong(line.substring(3));
+                } else if (line.startsWith("event:")) {
+                    event.name = line.substring(6);
+                } else if (line.isEmpty() && event.name != null) {
+                    return event;
+                }
+            }
+            throw new EOFException("Change feed closed");
+        }
+
+        @Override
+        public void close() {
+            connection.disconnect();
+        }
+    }
+
+    private static class Event {
+        private String name;
+        private long id;
+
+        @Override
+        public String toString() {
+            return name + ":" + id;
+        }
+    }
+}
@@ -21,20 +21,40 @@ import static com.jayway.restassured.RestAssured.when;
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.isEmptyString;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.http.ContentType;
+import com.jayway.restassured.response.Response;
 import dev.snowdrop.example.service.Book;
 import dev.snowdrop.example.service.BookEnum;
 import dev.snowdrop.example.service.BookRepository;
 import dev.snowdrop.example.service.BookUtils;
+import dev.snowdrop.example.web.BookMediaTypes;
+import org.infinispan.Cache;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,12 +67,18 @@ import org.springframework.test.context.junit4.SpringRunner;
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class ExampleApplicationTest {
 
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
     @Value("${local.server.port}")
     private int port;
 
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private Cache<Integer, Book> store;
+
     @Before
     public void beforeTest() {
         bookRepository.deleteAll();
@@ -109,6 +135,184 @@ public class ExampleApplicationTest {
             .body("title", hasItems(ccf.getTitle()));
     }
 
+    @Test
+    public void testFindPages() {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Book lotr = save(BookEnum.LOTR.toBook());
+        Book ccf = save(BookEnum.CCF.toBook());
+        Map<String, Object> example = new HashMap<>();
+        example.put("orderBy", "author");
+        example.put("maxResults", 2);
+        String next = given().contentType(ContentType.JSON)
+            .body(example)
+            .when()
+            .post("/findPage")
+            .then()
+            .statusCode(200)
+            .body("books.id", contains(sw.getId(), lotr.getId()))
+            .extract()
+            .path("next");
+
+        example.put("pageToken", next);
+        given().contentType(ContentType.JSON)
+            .body(example)
+            .when()
+            .post("/findPage")
+            .then()
+            .statusCode(200)
+            .body("books.id", contains(ccf.getId()))
+            .body("next", nullValue());
+    }
+
+    @Test
+    public void testFindPagesWithInvalidToken() {
+        Map<String, Object> example = new HashMap<>();
+        example.put("pageToken", "invalid");
+        given().contentType(ContentType.JSON)
+            .body(example)
+            .when()
+            .post("/findPage")
+            .then()
+            .statusCode(422);
+    }
+
+    private List<Integer> findAllPages(Map<String, Object> example) {
+        List<Integer> ids = new ArrayList<>();
+        String next = null;
+        do {
+            example.put("pageToken", next);
+            Response page = given().contentType(ContentType.JSON)
+                .body(example)
+                .when()
+                .post("/findPage")
+                .then()
+                .statusCode(200)
+                .extract()
+                .response();
+            List<Integer> books = page.path("books.id");
+            ids.addAll(books);
+            next = page.path("next");
+        } while (next != null);
+        return ids;
+    }
+
+    @Test
+    public void testFindPagesWithMissingValues() {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Book lotr = save(BookEnum.LOTR.toBook());
+        Book ccf = save(BookEnum.CCF.toBook());
+        // neither an author nor a release date
+        Book anonymous = save(new Book(9, "Beowulf", null, "Monsters. Dragon.", null));
+        Book unknown = save(new Book(10, "The Cloud of Unknowing", null, "Contemplation.", null));
+
+        Map<String, Object> example = new HashMap<>();
+        example.put("maxResults", 2);
+        example.put("orderBy", "author");
+        assertThat(findAllPages(example), contains(sw.getId(), lotr.getId(), ccf.getId(), anonymous.getId(), unknown.getId()));
+        example.put("direction", "DESC");
+        assertThat(findAllPages(example), contains(ccf.getId(), lotr.getId(), sw.getId(), unknown.getId(), anonymous.getId()));
+
+        example.put("orderBy", "releaseDate");
+        example.put("direction", "ASC");
+        assertThat(findAllPages(example), contains(lotr.getId(), ccf.getId(), sw.getId(), anonymous.getId(), unknown.getId()));
+        example.put("direction", "DESC");
+        assertThat(findAllPages(example), contains(sw.getId(), ccf.getId(), lotr.getId(), unknown.getId(), anonymous.getId()));
+
+        // a page ending on a book without a value
+        example.put("maxResults", 4);
+        assertThat(findAllPages(example), contains(sw.getId(), ccf.getId(), lotr.getId(), unknown.getId(), anonymous.getId()));
+    }
+
+    @Test
+    public void testFindPagesWithInvalidMaxResults() {
+        save(BookEnum.STAR_WARS.toBook());
+        Map<String, Object> example = new HashMap<>();
+        example.put("maxResults", 0);
+        given().contentType(ContentType.JSON)
+            .body(example)
+            .when()
+            .post("/findPage")
+            .then()
+            .statusCode(422);
+    }
+
+    @Test
+    public void testDeleteByExample() {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Book ccf = save(BookEnum.CCF.toBook());
+        given().contentType(ContentType.JSON)
+            .body(Collections.singletonMap("author", "Roald Dahl"))
+            .when()
+            .post("/deleteForm")
+            .then()
+            .statusCode(200)
+            .body(is("1"));
+        assertFalse(bookRepository.existsById(ccf.getId()));
+        assertTrue(bookRepository.existsById(sw.getId()));
+    }
+
+    @Test
+    public void testDeleteByEmptyExample() {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        given().contentType(ContentType.JSON)
+            .body(Collections.emptyMap())
+            .when()
+            .post("/deleteForm")
+            .then()
+            .statusCode(200)
+            .body(is("0"));
+        assertTrue(bookRepository.existsById(sw.getId()));
+    }
+
+    @Test
+    public void testChanges() throws Exception {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Map<String, String> book = new HashMap<>();
+        book.put("title", "Kubernetes in Action");
+        book.put("author", "Marko Luksa");
+
+        long updated;
+        try (EventStream events = new EventStream("/changes")) {
+            given().contentType(ContentType.JSON)
+                .body(book)
+                .when()
+                .put(String.valueOf(sw.getId()))
+                .then()
+                .statusCode(200);
+            when().delete(String.valueOf(sw.getId()))
+                .then()
+                .statusCode(204);
+
+            Event event = events.next();
+            assertThat(event.name, is("updated"));
+            updated = event.id;
+            assertThat(events.next().toString(), is("deleted:" + (updated + 1)));
+        }
+
+        try (EventStream events = new EventStream("/changes?since=" + (updated - 1))) {
+            assertThat(events.next().toString(), is("updated:" + updated));
+            assertThat(events.next().toString(), is("deleted:" + (updated + 1)));
+        }
+    }
+
+    @Test
+    public void testChangesAfterClear() throws Exception {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        long deleted;
+        try (EventStream events = new EventStream("/changes")) {
+            when().delete(String.valueOf(sw.getId()));
+            deleted = events.next().id;
+
+            store.clear();
+            assertThat(events.next().toString(), is("reset:" + (deleted + 1)));
+        }
+
+        // the changes before the clear are gone
+        try (EventStream events = new EventStream("/changes?since=" + (deleted - 1))) {
+            assertThat(events.next().toString(), is("reset:" + (deleted + 1)));
+        }
+    }
+
     @Test
     public void testGetAll() {
         Book sw = save(BookEnum.STAR_WARS.toBook());
@@ -138,6 +342,91 @@ public class ExampleApplicationTest {
             .body("title", is(sw.getTitle()));
     }
 
+    @Test
+    public void testGetOneAsSmile() throws Exception {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        byte[] body = given().accept(BookMediaTypes.APPLICATION_SMILE_VALUE)
+            .when()
+            .get(String.valueOf(sw.getId()))
+            .then()
+            .statusCode(200)
+            .contentType(BookMediaTypes.APPLICATION_SMILE_VALUE)
+            .extract()
+            .asByteArray();
+
+        JsonNode book = SMILE.readTree(body);
+        assertThat(book.get("id").asInt(), is(sw.getId()));
+        assertThat(book.get("title").asText(), is(sw.getTitle()));
+        assertThat(book.get("author").asText(), is(sw.getAuthor()));
+        assertThat(book.get("content").asText(), is(sw.getContent()));
+        assertThat(book.get("releaseDate").asText(), is(sw.getReleaseDate().toString()));
+    }
+
+    @Test
+    public void testGetAllAsCbor() throws Exception {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Book lotr = save(BookEnum.LOTR.toBook());
+        byte[] body = given().accept(BookMediaTypes.APPLICATION_CBOR_VALUE)
+            .when()
+            .get()
+            .then()
+            .statusCode(200)
+            .contentType(BookMediaTypes.APPLICATION_CBOR_VALUE)
+            .extract()
+            .asByteArray();
+
+        Map<Integer, String> titles = new HashMap<>();
+        CBOR.readTree(body).forEach(book -> titles.put(book.get("id").asInt(), book.get("title").asText()));
+        assertThat(titles.size(), is(2));
+        assertThat(titles.get(sw.getId()), is(sw.getTitle()));
+        assertThat(titles.get(lotr.getId()), is(lotr.getTitle()));
+    }
+
+    @Test
+    public void testPostAsSmile() throws Exception {
+        Map<String, String> book = new HashMap<>();
+        book.put("title", "Kubernetes in Action");
+        book.put("author", "Marko Luksa");
+        book.put("content", "K8s. OpenShift.");
+        book.put("releaseDate", LocalDate.of(2017, 8, 1).toString());
+        byte[] body = given().contentType(BookMediaTypes.APPLICATION_SMILE_VALUE)
+            .accept(BookMediaTypes.APPLICATION_SMILE_VALUE)
+            .body(SMILE.writeValueAsBytes(book))
+            .when()
+            .post()
+            .then()
+            .statusCode(201)
+            .contentType(BookMediaTypes.APPLICATION_SMILE_VALUE)
+            .extract()
+            .asByteArray();
+
+        int id = SMILE.readTree(body).get("id").asInt();
+        Book saved = bookRepository.findById(id).get();
+        assertThat(saved.getTitle(), is("Kubernetes in Action"));
+        assertThat(saved.getReleaseDate(), is(LocalDate.of(2017, 8, 1)));
+    }
+
+    @Test
+    public void testPutAsCbor() throws Exception {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Map<String, String> book = new HashMap<>();
+        book.put("title", "Kubernetes in Action");
+        book.put("author", "Marko Luksa");
+        book.put("content", "K8s. OpenShift.");
+        book.put("releaseDate", LocalDate.of(2017, 8, 1).toString());
+        given().contentType(BookMediaTypes.APPLICATION_CBOR_VALUE)
+            .body(CBOR.writeValueAsBytes(book))
+            .when()
+            .put(String.valueOf(sw.getId()))
+            .then()
+            .statusCode(200)
+            .body("title", is("Kubernetes in Action"));
+
+        Book saved = bookRepository.findById(sw.getId()).get();
+        assertThat(saved.getAuthor(), is("Marko Luksa"));
+        assertThat(saved.getReleaseDate(), is(LocalDate.of(2017, 8, 1)));
+    }
+
     @Test
     public void testGetNotExisting() {
         when().get("0")
@@ -257,6 +546,33 @@ public class ExampleApplicationTest {
             .statusCode(415);
     }
 
+    @Test
+    public void testStats() {
+        Book sw = save(BookEnum.STAR_WARS.toBook());
+        Book ccf = save(BookEnum.CCF.toBook());
+        when().get("/stats/authors")
+            .then()
+            .statusCode(200)
+            .body("'George Lucas'", is(1))
+            .body("'Roald Dahl'", is(1));
+        when().get("/stats/years")
+            .then()
+            .statusCode(200)
+            .body("'1976'", is(1));
+        when().get("/stats/authors/{author}/latest", ccf.getAuthor())
+            .then()
+            .statusCode(200)
+            .body("id", is(ccf.getId()));
+        when().post("/stats/rebuild")
+            .then()
+            .statusCode(200)
+            .body("consistent", is(true));
+        when().delete(String.valueOf(sw.getId()));
+        when().get("/stats/authors/{author}/latest", sw.getAuthor())
+            .then()
+            .statusCode(404);
+    }
+
     @Test
     public void testDelete() {
         Book sw = save(BookEnum.STAR_WARS.toBook());
@@ -273,4 +589,48 @@ public class ExampleApplicationTest {
             .statusCode(404);
     }
 
+    /**
+     * Server-sent events of the change feed, read one at a time.
+     */
+    private static class EventStream implements AutoCloseable {
+        private final HttpURLConnection connection;
+        private final BufferedReader reader;
+
+        private EventStream(String path) throws IOException {
+            connection = (HttpURLConnection) new URL(RestAssured.baseURI + path).openConnection();
+            connection.setRequestProperty("Accept", "text/event-stream");
+            connection.setReadTimeout(10000);
+            reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private Event next() throws IOException {
+            Event event = new Event();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("id:")) {
+                    event.id = Long.parseLong(line.substring(3));
+                } else if (line.startsWith("event:")) {
+                    event.name = line.substring(6);
+                } else if (line.isEmpty() && event.name != null) {
+                    return event;
+                }
+            }
+            throw new EOFException("Change feed closed");
+        }
+
+        @Override
+        public void close() {
+            connection.disconnect();
+        }
+    }
+
+    private static class Event {
+        private String name;
+        private long id;
+
+        @Override
+        public String toString() {
+            return name + ":" + id;
+        }
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.snowdrop.example.service.Book;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Compares payload size and encode/decode time of JSON, Smile and CBOR on a synthetic catalog.
+ * Not a test; run its main method, optionally with the catalog size as argument.
+ */
+public class FormatBenchmark {
+
+    private static final TypeReference<List<Book>> BOOKS = new TypeReference<List<Book>>() {
+    };
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+        List<Book> catalog = catalog(size);
+
+        System.out.printf("%d books, best of %d rounds%n", size, ROUNDS);
+        System.out.printf("%-6s %12s %12s %12s%n", "format", "bytes", "encode ms", "decode ms");
+        run("json", Jackson2ObjectMapperBuilder.json().build(), catalog);
+        run("smile", Jackson2ObjectMapperBuilder.smile().build(), catalog);
+        run("cbor", Jackson2ObjectMapperBuilder.cbor().build(), catalog);
+    }
+
+    private static void run(String format, ObjectMapper mapper, List<Book> catalog) throws Exception {
+        byte[] encoded = null;
+        long encode = Long.MAX_VALUE;
+        long decode = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            encoded = mapper.writeValueAsBytes(catalog);
+            encode = Math.min(encode, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<Book> decoded = mapper.readValue(encoded, BOOKS);
+            decode = Math.min(decode, System.nanoTime() - start);
+            if (decoded.size() != catalog.size()) {
+                throw new IllegalStateException(format + " decoded " + decoded.size() + " books");
+            }
+        }
+        System.out.printf("%-6s %12d %12.2f %12.2f%n", format, encoded.length, encode / 1e6, decode / 1e6);
+    }
+
+    static List<Book> catalog(int size) {
+        Random random = new Random(42);
+        String[] words = {"Force", "Jedi", "Ring", "Wizard", "Mafia", "Law", "Dinosaurs", "Prison", "Chocolate", "Magic"};
+        List<Book> books = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int w = 0; w < 12; w++) {
+                content.append(words[random.nextInt(words.length)]).append(". ");
+            }
+            books.add(new Book(id, "Title " + id, "Author " + random.nextInt(size / 10 + 1), content.toString(),
+                LocalDate.of(1900 + random.nextInt(120), 1 + random.nextInt(12), 1 + random.nextInt(28))));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.http.ContentType;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class IndexEndpointTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Before
+    public void beforeTest() {
+        RestAssured.baseURI = String.format("http://localhost:%d/application/bookindex", port);
+        bookRepository.deleteAll();
+        bookRepository.save(BookEnum.STAR_WARS.toBook());
+        bookRepository.save(BookEnum.CCF.toBook());
+    }
+
+    @Test
+    public void testStats() {
+        given().accept(ContentType.JSON)
+            .when()
+            .get()
+            .then()
+            .statusCode(200)
+            .body("documents", is(2))
+            .body("shards.size()", is(1))
+            .body("reindexing", is(false));
+    }
+
+    @Test
+    public void testMerge() {
+        given().accept(ContentType.JSON)
+            .contentType(ContentType.JSON)
+            .body("{}")
+            .when()
+            .post("/merge")
+            .then()
+            .statusCode(200)
+            .body("documents", is(2));
+    }
+}
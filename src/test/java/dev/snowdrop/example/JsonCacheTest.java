@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.restassured.http.ContentType;
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import dev.snowdrop.example.web.BookJsonCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "books.json-cache.enabled=true",
+    "books.json-cache.gzip=true",
+    "books.json-cache.max-entries=2"
+})
+public class JsonCacheTest {
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookJsonCache jsonCache;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private Book sw;
+
+    @Before
+    public void beforeTest() {
+        bookRepository.deleteAll();
+        sw = BookEnum.STAR_WARS.toBook();
+        bookRepository.save(sw);
+        bookRepository.save(BookEnum.LOTR.toBook());
+    }
+
+    private Response get(String path, String acceptEncoding) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(String.format("http://localhost:%d/api/books%s", port, path)).openConnection();
+        try {
+            connection.setRequestProperty("Accept", "application/json");
+            if (acceptEncoding != null) {
+                connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+            }
+            assertThat(connection.getResponseCode(), is(200));
+            Response response = new Response();
+            response.contentEncoding = connection.getHeaderField("Content-Encoding");
+            try (InputStream in = connection.getInputStream()) {
+                response.body = read("gzip".equals(response.contentEncoding) ? new GZIPInputStream(in) : in);
+            }
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            bytes.write(buffer, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testGetOneMatchesJackson() throws Exception {
+        assertThat(get("/" + sw.getId(), null).body, is(mapper.writeValueAsString(sw)));
+        // now from the cached encoding
+        assertThat(get("/" + sw.getId(), null).body, is(mapper.writeValueAsString(sw)));
+    }
+
+    @Test
+    public void testGetAllMatchesJackson() throws Exception {
+        List<Book> books = new ArrayList<>();
+        bookRepository.findAll().forEach(books::add);
+        assertThat(get("", null).body, is(mapper.writeValueAsString(books)));
+    }
+
+    @Test
+    public void testPutInvalidatesEncoding() throws Exception {
+        byte[] cached = jsonCache.json(bookRepository.findById(sw.getId()).get());
+        assertThat(new String(cached, StandardCharsets.UTF_8), is(mapper.writeValueAsString(sw)));
+
+        Book changed = BookEnum.STAR_WARS.toBook();
+        changed.setTitle("Star Wars: A New Hope");
+        changed.setId(null);
+        given().contentType(ContentType.JSON)
+            .body(changed)
+            .when()
+            .put(String.format("http://localhost:%d/api/books/%d", port, sw.getId()))
+            .then()
+            .statusCode(200);
+
+        changed.setId(sw.getId());
+        assertThat(get("/" + sw.getId(), null).body, is(mapper.writeValueAsString(changed)));
+    }
+
+    @Test
+    public void testGzipOnlyWhenAccepted() throws Exception {
+        String json = mapper.writeValueAsString(sw);
+
+        Response gzipped = get("/" + sw.getId(), "gzip");
+        assertThat(gzipped.contentEncoding, is("gzip"));
+        assertThat(gzipped.body, is(json));
+        assertThat(get("/" + sw.getId(), "deflate, *;q=0.5").contentEncoding, is("gzip"));
+
+        for (String acceptEncoding : new String[]{null, "identity", "gzip;q=0", "gzip; q=0.0, deflate", "*;q=0"}) {
+            Response plain = get("/" + sw.getId(), acceptEncoding);
+            assertThat(acceptEncoding, plain.contentEncoding, nullValue());
+            assertThat(plain.body, is(json));
+        }
+    }
+
+    @Test
+    public void testClearDropsEncodings() throws Exception {
+        get("/" + sw.getId(), null);
+        assertThat(jsonCache.size(), is(1));
+
+        bookRepository.deleteAll();
+        assertThat(jsonCache.size(), is(0));
+    }
+
+    @Test
+    public void testEncodingsBounded() throws Exception {
+        bookRepository.save(BookEnum.CCF.toBook());
+        for (BookEnum book : new BookEnum[]{BookEnum.STAR_WARS, BookEnum.LOTR, BookEnum.CCF}) {
+            get("/" + book.toBook().getId(), null);
+        }
+        assertThat(jsonCache.size(), is(2));
+        // still encoded right when no longer kept
+        assertThat(get("/" + sw.getId(), null).body, is(mapper.writeValueAsString(sw)));
+    }
+
+    private static class Response {
+        private String contentEncoding;
+        private String body;
+    }
+}
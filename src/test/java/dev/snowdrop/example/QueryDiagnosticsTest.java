@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.jayway.restassured.http.ContentType;
+import dev.snowdrop.example.actuate.BookQueryExplainEndpoint;
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.rule.OutputCapture;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "books.slow-query.threshold-ms=0")
+public class QueryDiagnosticsTest {
+
+    @Rule
+    public OutputCapture output = new OutputCapture();
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookQueryExplainEndpoint explainEndpoint;
+
+    private Book ccf;
+
+    @Before
+    public void beforeTest() {
+        bookRepository.deleteAll();
+        ccf = BookEnum.CCF.toBook();
+        bookRepository.save(ccf);
+        bookRepository.save(BookEnum.STAR_WARS.toBook());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExplain() {
+        Map<String, Object> explained = explainEndpoint.explain(ccf.getAuthor(), null, null, "releaseDate", "DESC", 5);
+
+        Map<String, Object> criteria = (Map<String, Object>) explained.get("criteria");
+        assertThat(criteria.get("author"), is(ccf.getAuthor()));
+        assertThat(criteria.get("orderBy"), is("releaseDate"));
+        assertThat(criteria.get("direction"), is("DESC"));
+        assertThat(criteria.get("maxResults"), is(5));
+        assertThat((String) explained.get("lucene"), containsString("author:" + ccf.getAuthor()));
+        assertThat((String) explained.get("sort"), containsString("releaseDate"));
+        assertThat(explained.get("hits"), is(1));
+
+        List<Map<String, Object>> phases = (List<Map<String, Object>>) explained.get("phases");
+        assertThat(phases.size(), is(2));
+        assertThat(phases.get(0).get("name"), is("findByAuthor"));
+        assertThat(phases.get(0).get("hits"), is(1));
+        assertThat(phases.get(1).get("name"), is("lucene count"));
+        assertThat(phases.get(1).get("hits"), is(1));
+    }
+
+    @Test
+    public void testExplainOverHttp() {
+        given().accept(ContentType.JSON)
+            .queryParam("author", ccf.getAuthor())
+            .queryParam("orderBy", "releaseDate")
+            .when()
+            .get(String.format("http://localhost:%d/application/bookexplain", port))
+            .then()
+            .statusCode(200)
+            .body("criteria.author", is(ccf.getAuthor()))
+            .body("criteria.orderBy", is("releaseDate"))
+            .body("hits", is(1));
+    }
+
+    @Test
+    public void testSlowQueryLog() {
+        bookRepository.findByAuthor(ccf.getAuthor(), PageRequest.of(0, 10));
+
+        String logged = output.toString();
+        assertThat(logged, containsString("Slow query findByAuthor[" + ccf.getAuthor()));
+        assertThat(logged, containsString("equivalent lucene=[author:" + ccf.getAuthor() + "]"));
+        assertThat(logged, containsString("hits=1,"));
+    }
+
+    @Test
+    public void testSlowStreamLoggedOnClose() {
+        Stream<Book> books = bookRepository.findByTitleLike("chocolate");
+        assertThat(books.collect(Collectors.toList()).size(), is(1));
+        assertThat(output.toString(), not(containsString("Slow query findByTitleLike")));
+
+        books.close();
+        String logged = output.toString();
+        assertThat(logged, containsString("Slow query findByTitleLike[chocolate]"));
+        assertThat(logged, containsString("hits=1,"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookLuceneQueries;
+import dev.snowdrop.example.service.ShardedBookSearch;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.infinispan.Cache;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * Measures a sorted content search over a sharded index with 1 to N search threads.
+ * Not a test; run its main method with the number of shards and the catalog size as optional arguments.
+ */
+public class ShardScalingBenchmark {
+
+    private static final int QUERIES = 200;
+    private static final int MAX_RESULTS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int shards = (args.length > 0 ? Integer.parseInt(args[0]) : cores);
+        int size = (args.length > 1 ? Integer.parseInt(args[1]) : 100000);
+
+        EmbeddedCacheManager cacheManager = ExampleApplication.createCacheManager(null, shards, false);
+        try {
+            Cache<Integer, Book> store = cacheManager.getCache();
+            List<Book> catalog = FormatBenchmark.catalog(size);
+            long start = System.nanoTime();
+            Map<Integer, Book> books = new LinkedHashMap<>();
+            catalog.forEach(book -> books.put(book.getId(), book));
+            store.putAll(books);
+            System.out.printf("%d books indexed into %d shards in %.0f ms%n", size, shards, (System.nanoTime() - start) / 1e6);
+
+            BookLuceneQueries queries = new BookLuceneQueries(store);
+            Query query = queries.byContentContains("magic");
+            Sort sort = queries.sort("releaseDate", Direction.DESC);
+
+            System.out.printf("%-8s %12s %12s%n", "threads", "ms/query", "speedup");
+            double base = 0;
+            for (int threads = 1; threads <= cores; threads++) {
+                ShardedBookSearch search = new ShardedBookSearch(store, shards, threads);
+                try {
+                    for (int i = 0; i < QUERIES / 10; i++) {
+                        search.search(query, sort, MAX_RESULTS);
+                    }
+                    start = System.nanoTime();
+                    for (int i = 0; i < QUERIES; i++) {
+                        search.search(query, sort, MAX_RESULTS);
+                    }
+                    double perQuery = (System.nanoTime() - start) / 1e6 / QUERIES;
+                    if (threads == 1) {
+                        base = perQuery;
+                    }
+                    System.out.printf("%-8d %12.3f %12.2f%n", threads, perQuery, base / perQuery);
+                } finally {
+                    search.stop();
+                }
+            }
+        } finally {
+            cacheManager.stop();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.http.ContentType;
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import dev.snowdrop.example.service.ShardedBookSearch;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Runs {@code /findForm} against a sharded index and compares it with the repository queries
+ * that serve it when the index has a single shard.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "books.index.shards=2")
+public class ShardedSearchTest {
+
+    private static final String DAHL = BookEnum.CCF.toBook().getAuthor();
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShardedBookSearch shardedSearch;
+
+    @Before
+    public void beforeTest() {
+        RestAssured.baseURI = String.format("http://localhost:%d/api/books", port);
+        bookRepository.deleteAll();
+        for (BookEnum book : BookEnum.values()) {
+            bookRepository.save(book.toBook());
+        }
+        // more books by the same author, so that the hits are spread over both shards
+        bookRepository.save(new Book(20, "James and the Giant Peach", DAHL, "An orphan boy and a giant peach.", LocalDate.of(1961, 1, 1)));
+        bookRepository.save(new Book(21, "Matilda", DAHL, "A girl who loves to read.", LocalDate.of(1988, 10, 1)));
+        bookRepository.save(new Book(22, "The BFG", DAHL, "A big friendly giant.", LocalDate.of(1982, 1, 14)));
+        bookRepository.save(new Book(23, "The Witches", DAHL, "Witches who hate children.", LocalDate.of(1983, 1, 1)));
+    }
+
+    private List<Integer> findForm(Map<String, Object> example) {
+        return given().contentType(ContentType.JSON)
+            .body(example)
+            .when()
+            .post("/findForm")
+            .then()
+            .statusCode(200)
+            .extract()
+            .path("id");
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSharded() {
+        assertThat(shardedSearch.isSharded(), is(true));
+    }
+
+    @Test
+    public void testFindByExample() {
+        Map<String, Object> example = new HashMap<>();
+        example.put("orderBy", "releaseDate");
+        example.put("author", DAHL);
+
+        List<Integer> expected = ids(bookRepository.findByAuthor(DAHL, PageRequest.of(0, 20, Sort.Direction.ASC, "releaseDate")));
+        assertThat(expected.size(), is(5));
+        assertThat(findForm(example), is(expected));
+    }
+
+    @Test
+    public void testFindByExampleDescending() {
+        Map<String, Object> example = new HashMap<>();
+        example.put("orderBy", "releaseDate");
+        example.put("direction", "DESC");
+        example.put("author", DAHL);
+        example.put("maxResults", 3);
+
+        List<Integer> expected = ids(bookRepository.findByAuthor(DAHL, PageRequest.of(0, 3, Sort.Direction.DESC, "releaseDate")));
+        assertThat(expected, is(Arrays.asList(21, 23, 22)));
+        assertThat(findForm(example), is(expected));
+    }
+
+    @Test
+    public void testFindByReleaseDate() {
+        Book lotr = BookEnum.LOTR.toBook();
+        Map<String, Object> example = new HashMap<>();
+        example.put("releaseDate", lotr.getReleaseDate().toString());
+
+        List<Integer> expected = ids(bookRepository.findByReleaseDate(lotr.getReleaseDate(), PageRequest.of(0, 20, Sort.Direction.ASC, "author")));
+        assertThat(expected, is(Collections.singletonList(lotr.getId())));
+        assertThat(findForm(example), is(expected));
+    }
+
+    @Test
+    public void testFindByAuthorAndContent() {
+        Map<String, Object> example = new HashMap<>();
+        example.put("orderBy", "releaseDate");
+        example.put("author", DAHL);
+        example.put("content", "giant");
+
+        List<Book> byAuthor = bookRepository.findByAuthor(DAHL, PageRequest.of(0, 20, Sort.Direction.ASC, "releaseDate"));
+        List<Book> byContent = bookRepository.findByContentContains("giant", PageRequest.of(0, 20, Sort.Direction.ASC, "releaseDate"));
+        byContent.retainAll(byAuthor);
+        List<Integer> expected = ids(byContent);
+        assertTrue(expected.containsAll(Arrays.asList(20, 22)));
+        assertThat(findForm(example), is(expected));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example;
+
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.RestAssured.when;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.http.ContentType;
+import dev.snowdrop.example.service.Book;
+import dev.snowdrop.example.service.BookEnum;
+import dev.snowdrop.example.service.BookRepository;
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "books.write-coalescing.window-ms=500")
+public class WriteCoalescingTest {
+
+    private static final int UPDATES = 5;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private Cache<Integer, Book> store;
+
+    private final Modifications modifications = new Modifications();
+
+    // a thread per update, as the common pool may run them one after the other
+    private ExecutorService callers;
+
+    private Book sw;
+
+    @Before
+    public void beforeTest() {
+        RestAssured.baseURI = String.format("http://localhost:%d/api/books", port);
+        bookRepository.deleteAll();
+        sw = BookEnum.STAR_WARS.toBook();
+        bookRepository.save(sw);
+        store.addListener(modifications);
+        callers = Executors.newFixedThreadPool(UPDATES);
+    }
+
+    @After
+    public void afterTest() {
+        callers.shutdownNow();
+        store.removeListener(modifications);
+    }
+
+    @Test
+    public void testConcurrentPutsAreSavedOnce() throws Exception {
+        List<CompletableFuture<String>> titles = new ArrayList<>();
+        for (int i = 0; i < UPDATES; i++) {
+            Book update = BookEnum.STAR_WARS.toBook();
+            update.setId(null);
+            update.setTitle("Episode " + i);
+            titles.add(CompletableFuture.supplyAsync(() -> given().contentType(ContentType.JSON)
+                .body(update)
+                .when()
+                .put(String.valueOf(sw.getId()))
+                .then()
+                .statusCode(200)
+                .extract()
+                .<String>path("title"), callers));
+            // well within the window, so that the updates join one batch in this order
+            Thread.sleep(20);
+        }
+
+        for (int i = 0; i < UPDATES; i++) {
+            assertThat(titles.get(i).get(10, TimeUnit.SECONDS), is("Episode " + i));
+        }
+        assertThat(modifications.count.get(), is(1));
+        assertThat(bookRepository.findById(sw.getId()).get().getTitle(), is("Episode " + (UPDATES - 1)));
+    }
+
+    @Test
+    public void testPutThenDeleteWithinWindow() throws Exception {
+        Book update = BookEnum.STAR_WARS.toBook();
+        update.setId(null);
+        update.setTitle("Episode 1");
+        CompletableFuture<Integer> status = CompletableFuture.supplyAsync(() -> given().contentType(ContentType.JSON)
+            .body(update)
+            .when()
+            .put(String.valueOf(sw.getId()))
+            .then()
+            .extract()
+            .statusCode(), callers);
+        // well within the window, so that the delete is applied before the batch is saved
+        Thread.sleep(100);
+        when().delete(String.valueOf(sw.getId()))
+            .then()
+            .statusCode(204);
+
+        assertThat(status.get(10, TimeUnit.SECONDS), is(404));
+        assertFalse(bookRepository.existsById(sw.getId()));
+        assertThat(modifications.count.get(), is(0));
+    }
+
+    @Listener(observation = Listener.Observation.POST)
+    public static class Modifications {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @CacheEntryModified
+        public void modified(CacheEntryModifiedEvent<Integer, Book> event) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.admission;
+
+import static dev.snowdrop.example.admission.AdaptiveConcurrencyLimiter.Permit.ACQUIRED;
+import static dev.snowdrop.example.admission.AdaptiveConcurrencyLimiter.Permit.QUEUE_FULL;
+import static dev.snowdrop.example.admission.AdaptiveConcurrencyLimiter.Permit.TIMED_OUT;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long TARGET_MILLIS = 100;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS + 1);
+
+    private static AdaptiveConcurrencyLimiter limiter(int minLimit, int maxLimit, int maxQueue) {
+        return new AdaptiveConcurrencyLimiter(minLimit, maxLimit, maxQueue, TARGET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static AdaptiveConcurrencyLimiter.Permit acquire(AdaptiveConcurrencyLimiter limiter, long timeoutMillis) {
+        try {
+            return limiter.acquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testAdmitsUpToLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            assertThat(acquire(limiter, 0), is(ACQUIRED));
+        }
+        assertThat(acquire(limiter, 0), is(QUEUE_FULL));
+
+        limiter.release(FAST);
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1);
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+
+        CompletableFuture<AdaptiveConcurrencyLimiter.Permit> waiting = CompletableFuture.supplyAsync(() -> acquire(limiter, 10000));
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(1);
+        }
+        assertThat(acquire(limiter, 10000), is(QUEUE_FULL));
+
+        limiter.release(FAST);
+        assertThat(waiting.get(10, TimeUnit.SECONDS), is(ACQUIRED));
+        assertThat(limiter.getWaiting(), is(0));
+    }
+
+    @Test
+    public void testTimesOutInQueue() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 1);
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+
+        long start = System.nanoTime();
+        assertThat(acquire(limiter, 50), is(TIMED_OUT));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50, is(true));
+        assertThat(limiter.getWaiting(), is(0));
+    }
+
+    @Test
+    public void testDecreasesOnSlowCalls() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 10, 0);
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+        limiter.release(SLOW);
+        assertThat(limiter.getLimit(), is(9));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(acquire(limiter, 0), is(ACQUIRED));
+            limiter.release(SLOW);
+        }
+        assertThat(limiter.getLimit(), is(2));
+    }
+
+    @Test
+    public void testIncreasesOnFastCallsWhenSaturated() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10, 0);
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+        limiter.release(SLOW);
+        assertThat(limiter.getLimit(), is(9));
+
+        // fast calls below the limit leave it alone
+        assertThat(acquire(limiter, 0), is(ACQUIRED));
+        limiter.release(FAST);
+        assertThat(limiter.getLimit(), is(9));
+
+        // saturated fast calls add about one per limit's worth of calls
+        for (int i = 0; i < 8; i++) {
+            assertThat(acquire(limiter, 0), is(ACQUIRED));
+        }
+        int releases = 0;
+        while (limiter.getLimit() < 10) {
+            assertThat(acquire(limiter, 0), is(ACQUIRED));
+            limiter.release(FAST);
+            releases++;
+        }
+        assertThat(releases, is(10));
+
+        // never beyond the maximum
+        for (int i = 0; i < 100; i++) {
+            if (acquire(limiter, 0) == ACQUIRED) {
+                limiter.release(FAST);
+            }
+        }
+        assertThat(limiter.getLimit(), is(10));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016-2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.snowdrop.example.service;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import dev.snowdrop.example.exception.NotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class BookWriteCoalescerTest {
+
+    private static final long WINDOW_MS = 500;
+    private static final int CALLERS = 5;
+
+    private BookRepository repository;
+    private BookWriteCoalescer coalescer;
+    private ExecutorService callers;
+
+    @Before
+    public void beforeTest() {
+        repository = mock(BookRepository.class);
+        when(repository.existsById(any())).thenReturn(true);
+        coalescer = new BookWriteCoalescer(repository, WINDOW_MS);
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void afterTest() {
+        callers.shutdownNow();
+    }
+
+    private static Book book(int id, String title) {
+        Book book = BookEnum.STAR_WARS.toBook();
+        book.setId(id);
+        book.setTitle(title);
+        return book;
+    }
+
+    @Test
+    public void testSavesLastUpdateOfSameBookOnce() throws Exception {
+        List<Book> books = new ArrayList<>();
+        List<Future<Book>> saved = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Book book = book(1, "Update " + i);
+            books.add(book);
+            saved.add(callers.submit(() -> coalescer.save(book)));
+            // well within the window, so that the updates join one batch in this order
+            Thread.sleep(20);
+        }
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertThat(saved.get(i).get(10, TimeUnit.SECONDS), sameInstance(books.get(i)));
+        }
+        ArgumentCaptor<Book> stored = ArgumentCaptor.forClass(Book.class);
+        verify(repository, times(1)).save(stored.capture());
+        assertThat(stored.getValue().getTitle(), is("Update " + (CALLERS - 1)));
+    }
+
+    @Test
+    public void testDeletedBookNotSaved() throws Exception {
+        when(repository.existsById(1)).thenReturn(false);
+        try {
+            coalescer.save(book(1, "Update"));
+            throw new AssertionError("Deleted book was saved");
+        } catch (NotFoundException e) {
+            assertThat(e.getMessage(), is("Book with id=1 was not found"));
+        }
+        verify(repository, never()).save(any(Book.class));
+    }
+
+    @Test
+    public void testSavesDifferentBooksConcurrently() throws Exception {
+        // every save waits until all of them are running, so it times out if they are serialized
+        CountDownLatch running = new CountDownLatch(CALLERS);
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            running.countDown();
+            if (!running.await(WINDOW_MS * 4, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Saves of different books were serialized");
+            }
+            return invocation.getArgument(0);
+        });
+
+        List<Future<Book>> saved = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Book book = book(i + 1, "Book " + i);
+            saved.add(callers.submit(() -> coalescer.save(book)));
+        }
+
+        for (Future<Book> book : saved) {
+            book.get(10, TimeUnit.SECONDS);
+        }
+        verify(repository, times(CALLERS)).save(any(Book.class));
+    }
+}